@@ -0,0 +1,78 @@
+package com.moveinsync.metrobooking.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moveinsync.metrobooking.config.AppConfig;
+import com.moveinsync.metrobooking.dto.BookingResponse;
+import com.moveinsync.metrobooking.dto.PathSegment;
+import com.moveinsync.metrobooking.service.RoutePathCodec;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serialisation work per booking: the route path stored with the booking, as
+// JSON (the app's ObjectMapper bean) and in the encoded form, and the
+// BookingResponse written by Spring MVC's JsonMapper
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingSerializationBenchmark {
+
+    @Param({"5", "20", "60"})
+    int segments;
+
+    private final ObjectMapper objectMapper = new AppConfig().objectMapper();
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private List<PathSegment> path;
+    private BookingResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        path = new ArrayList<>();
+        for (int i = 0; i < segments; i++) {
+            path.add(PathSegment.builder()
+                    .stopName("Stop " + i)
+                    .stopCode("S" + i)
+                    .routeName(i < segments / 2 ? "Blue Line" : "Yellow Line")
+                    .routeColor(i < segments / 2 ? "BLUE" : "YELLOW")
+                    .isInterchange(i == segments / 2)
+                    .stopId(100L + i * 3)
+                    .routeId(i < segments / 2 ? 1L : 2L)
+                    .build());
+        }
+        response = BookingResponse.builder()
+                .bookingId(123456L)
+                .bookingReference("MIS-20260101-ABC123")
+                .sourceStop("Stop 0")
+                .destinationStop("Stop " + (segments - 1))
+                .path(path)
+                .totalStops(segments)
+                .totalInterchanges(1)
+                .estimatedTime(segments * 2.0 + 5)
+                .qrString("MIS-20260101-ABC123|1|" + (segments - 1) + "|user@example.com|3f9a1c")
+                .status("CONFIRMED")
+                .createdAt(LocalDateTime.of(2026, 1, 1, 9, 30))
+                .build();
+    }
+
+    @Benchmark
+    public String routePathJson() throws Exception {
+        return objectMapper.writeValueAsString(path);
+    }
+
+    @Benchmark
+    public byte[] routePathEncoded() {
+        return RoutePathCodec.encode(path);
+    }
+
+    @Benchmark
+    public byte[] bookingResponseJson() {
+        return jsonMapper.writeValueAsBytes(response);
+    }
+}
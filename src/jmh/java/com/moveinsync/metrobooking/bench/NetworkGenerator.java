@@ -0,0 +1,143 @@
+package com.moveinsync.metrobooking.bench;
+
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic metro networks for the benchmarks, built as the same Route/Stop
+// entities GraphService reads from the database.
+//
+//   GRID   - a line along every row and every column; every stop is an interchange
+//   RADIAL - lines running out from one central hub, crossed by ring lines
+//   CITY   - wandering cross-city lines over a jittered grid of stops; they share
+//            stops where they cross, like a real network grown over time
+public final class NetworkGenerator {
+
+    public enum Layout { GRID, RADIAL, CITY }
+
+    // Roughly 1 km between neighbouring stops
+    private static final double SPACING = 0.009;
+    private static final double BASE_LATITUDE = 28.40;
+    private static final double BASE_LONGITUDE = 76.90;
+
+    private NetworkGenerator() {
+    }
+
+    public static List<Route> generate(Layout layout, int stops, long seed) {
+        Random random = new Random(seed);
+        return switch (layout) {
+            case GRID -> grid(stops);
+            case RADIAL -> radial(stops);
+            case CITY -> city(stops, random);
+        };
+    }
+
+    private static List<Route> grid(int count) {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        Stop[] stops = gridStops(count, side, null);
+        List<Route> routes = new ArrayList<>();
+        for (int r = 0; r < side; r++) {
+            List<Stop> line = new ArrayList<>();
+            for (int c = 0; c < side && r * side + c < count; c++) line.add(stops[r * side + c]);
+            addRoute(routes, "Row " + r, line);
+        }
+        for (int c = 0; c < side; c++) {
+            List<Stop> line = new ArrayList<>();
+            for (int r = 0; r < side && r * side + c < count; r++) line.add(stops[r * side + c]);
+            addRoute(routes, "Column " + c, line);
+        }
+        return routes;
+    }
+
+    private static List<Route> radial(int count) {
+        int spokes = Math.max(4, (int) Math.round(Math.sqrt(count) / 4));
+        int length = Math.max(1, (count - 1) / spokes);
+        Stop hub = stop(1, BASE_LATITUDE, BASE_LONGITUDE);
+
+        Stop[][] spokeStops = new Stop[spokes][length];
+        long id = 2;
+        List<Route> routes = new ArrayList<>();
+        for (int s = 0; s < spokes; s++) {
+            double angle = 2 * Math.PI * s / spokes;
+            List<Stop> line = new ArrayList<>();
+            line.add(hub);
+            for (int k = 0; k < length; k++) {
+                double radius = (k + 1) * SPACING;
+                spokeStops[s][k] = stop(id++, BASE_LATITUDE + radius * Math.sin(angle),
+                        BASE_LONGITUDE + radius * Math.cos(angle));
+                line.add(spokeStops[s][k]);
+            }
+            addRoute(routes, "Spoke " + s, line);
+        }
+        // A ring line every fifth stop out, closing the loop at its first stop
+        for (int k = 4; k < length; k += 5) {
+            List<Stop> ring = new ArrayList<>();
+            for (int s = 0; s < spokes; s++) ring.add(spokeStops[s][k]);
+            ring.add(spokeStops[0][k]);
+            addRoute(routes, "Ring " + k, ring);
+        }
+        return routes;
+    }
+
+    private static List<Route> city(int count, Random random) {
+        int side = (int) Math.ceil(Math.sqrt(count));
+        Stop[] stops = gridStops(count, side, random);
+        int rows = (count + side - 1) / side;
+        int lines = Math.max(3, side * 2 / 3);
+
+        List<Route> routes = new ArrayList<>();
+        for (int l = 0; l < lines; l++) {
+            // Enter on a random edge heading roughly across the city, drifting as we go
+            double x;
+            double y;
+            double heading;
+            switch (random.nextInt(4)) {
+                case 0 -> { x = 0; y = random.nextDouble() * rows; heading = 0; }
+                case 1 -> { x = side - 1e-9; y = random.nextDouble() * rows; heading = Math.PI; }
+                case 2 -> { x = random.nextDouble() * side; y = 0; heading = Math.PI / 2; }
+                default -> { x = random.nextDouble() * side; y = rows - 1e-9; heading = -Math.PI / 2; }
+            }
+            heading += (random.nextDouble() - 0.5) * Math.PI / 3;
+
+            List<Stop> line = new ArrayList<>();
+            int last = -1;
+            while (x >= 0 && y >= 0 && x < side && y < rows) {
+                int index = (int) y * side + (int) x;
+                if (index < count && index != last) {
+                    line.add(stops[index]);
+                    last = index;
+                }
+                x += Math.cos(heading);
+                y += Math.sin(heading);
+                heading += random.nextGaussian() * 0.12;
+            }
+            addRoute(routes, "Line " + l, line);
+        }
+        return routes;
+    }
+
+    private static Stop[] gridStops(int count, int side, Random jitter) {
+        Stop[] stops = new Stop[count];
+        for (int i = 0; i < count; i++) {
+            double dr = jitter == null ? 0 : (jitter.nextDouble() - 0.5) * 0.4;
+            double dc = jitter == null ? 0 : (jitter.nextDouble() - 0.5) * 0.4;
+            stops[i] = stop(i + 1, BASE_LATITUDE + (i / side + dr) * SPACING,
+                    BASE_LONGITUDE + (i % side + dc) * SPACING);
+        }
+        return stops;
+    }
+
+    private static Stop stop(long id, double latitude, double longitude) {
+        return Stop.builder().id(id).name("Stop " + id).code("S" + id).isInterchange(false)
+                .latitude(latitude).longitude(longitude).build();
+    }
+
+    private static void addRoute(List<Route> routes, String name, List<Stop> stops) {
+        if (stops.size() < 2) return;
+        long id = routes.size() + 1;
+        routes.add(Route.builder().id(id).name(name).color("C" + id).stops(stops).build());
+    }
+}
@@ -0,0 +1,77 @@
+package com.moveinsync.metrobooking.security;
+
+import com.moveinsync.metrobooking.model.User;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.TimeUnit;
+
+// Bearer-token authentication per request, through JwtAuthFilter with the user
+// lookup stubbed out. Requests cycle over a pool of distinct tokens, as from
+// that many signed-in clients. cacheSize=0 turns the verified-claims cache
+// off; legacyDoubleParse is the old pipeline (key and parser rebuilt, token
+// parsed twice) for comparison. The bar is 10k requests/s on one core.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "moveinsync-metro-booking-super-secret-key-2024";
+
+    @Param({"0", "10000"})
+    long cacheSize;
+
+    @Param({"1000"})
+    int clients;
+
+    private JwtAuthFilter filter;
+    private String[] headers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        JwtService jwtService = new JwtService(SECRET, 3_600_000, cacheSize, new SimpleMeterRegistry());
+        UserPrincipal principal = new UserPrincipal(User.builder()
+                .id(1L).email("rider@metro.in").password("x").name("rider").role(User.Role.USER).build());
+        filter = new JwtAuthFilter(jwtService, email -> principal);
+        headers = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            headers[i] = "Bearer " + jwtService.generateToken("rider" + i + "@metro.in");
+        }
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/bookings/my-bookings");
+        request.addHeader("Authorization", nextHeader());
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Object authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    @Benchmark
+    public String legacyDoubleParse() {
+        String token = nextHeader().substring(7);
+        SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        return Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    private String nextHeader() {
+        String header = headers[next];
+        next = next + 1 == headers.length ? 0 : next + 1;
+        return header;
+    }
+}
@@ -0,0 +1,39 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.bench.NetworkGenerator;
+import com.moveinsync.metrobooking.bench.NetworkGenerator.Layout;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.model.Route;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Snapshot construction from routes already in memory (the database read is
+// not part of this)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBuildBenchmark {
+
+    @Param({"GRID", "RADIAL", "CITY"})
+    Layout layout;
+
+    @Param({"50", "1000", "10000", "100000"})
+    int stops;
+
+    private List<Route> routes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        routes = NetworkGenerator.generate(layout, stops, 17L);
+    }
+
+    @Benchmark
+    public MetroGraph buildGraph() {
+        return GraphService.buildGraph(routes, 1L);
+    }
+}
@@ -0,0 +1,181 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.bench.NetworkGenerator;
+import com.moveinsync.metrobooking.bench.NetworkGenerator.Layout;
+import com.moveinsync.metrobooking.dto.PathResult;
+import com.moveinsync.metrobooking.dto.PathSegment;
+import com.moveinsync.metrobooking.graph.GraphEdge;
+import com.moveinsync.metrobooking.graph.GraphNode;
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.graph.SearchMode;
+import com.moveinsync.metrobooking.graph.SearchResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// Live path finding on synthetic networks. Trips are picked per network from a
+// sample of random pairs: SHORT is a nearby trip, LONG the one with the most
+// stops, INTERCHANGES the one with the most line changes. legacyHashMapDijkstra
+// is the search PathFinderService ran before the (stop, line) engine (boxed
+// HashMaps and a PriorityQueue<long[]> over the map-based graph view) for
+// comparison.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathFindingBenchmark {
+
+    public enum Trip { SHORT, LONG, INTERCHANGES }
+
+    @Param({"GRID", "RADIAL", "CITY"})
+    Layout layout;
+
+    @Param({"50", "1000", "10000", "100000"})
+    int stops;
+
+    @Param({"SHORT", "LONG", "INTERCHANGES"})
+    Trip trip;
+
+    @Param({"DIJKSTRA", "ASTAR", "BIDIRECTIONAL"})
+    SearchMode mode;
+
+    private final PathFinderService pathFinderService = new PathFinderService(new SimpleMeterRegistry());
+    private MetroGraph graph;
+    private long sourceId;
+    private long destinationId;
+    private int[] states;
+    private double cost;
+    // The map-based graph the legacy search walked, built once as it used to be
+    private Map<Long, GraphNode> nodes;
+    private Map<Long, List<GraphEdge>> adjacency;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = GraphService.buildGraph(NetworkGenerator.generate(layout, stops, 17L), 1L);
+        CompactGraph compact = graph.getCompact();
+
+        Random random = new Random(29);
+        double best = Double.NEGATIVE_INFINITY;
+        for (int sample = 0; sample < 300; sample++) {
+            long a = compact.stopId(random.nextInt(compact.stopCount()));
+            long b = compact.stopId(random.nextInt(compact.stopCount()));
+            if (a == b) continue;
+            PathResult result = pathFinderService.findOptimalPath(graph, a, b, SearchMode.DIJKSTRA);
+            if (!result.isPathFound()) continue;
+            double score = switch (trip) {
+                case SHORT -> result.getTotalStops() >= 3 ? -result.getTotalStops() : Double.NEGATIVE_INFINITY;
+                case LONG -> result.getTotalStops();
+                case INTERCHANGES -> result.getTotalInterchanges() * 10_000 + result.getTotalStops();
+            };
+            if (score > best) {
+                best = score;
+                sourceId = a;
+                destinationId = b;
+            }
+        }
+        if (best == Double.NEGATIVE_INFINITY) {
+            throw new IllegalStateException("No connected trip found in " + layout + "/" + stops);
+        }
+
+        SearchResult search = pathFinderService.getRouteSearch().shortestPath(compact,
+                compact.indexOf(sourceId), compact.indexOf(destinationId));
+        states = search.getStates();
+        cost = search.getCost();
+
+        nodes = graph.getNodes();
+        adjacency = graph.getAdjacencyList();
+    }
+
+    @Benchmark
+    public PathResult findOptimalPath() {
+        return pathFinderService.findOptimalPath(graph, sourceId, destinationId, mode);
+    }
+
+    // Independent of the search mode; run with -p mode=DIJKSTRA to avoid repeats
+    @Benchmark
+    public PathResult reconstructPath() {
+        return pathFinderService.reconstructPath(graph.getCompact(), states, cost);
+    }
+
+    // Independent of the search mode; run with -p mode=DIJKSTRA to avoid repeats
+    @Benchmark
+    public PathResult legacyHashMapDijkstra() {
+        Map<Long, Double> costs = new HashMap<>();
+        Map<Long, GraphEdge> previous = new HashMap<>();
+        Set<Long> visited = new HashSet<>();
+        PriorityQueue<long[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[1]));
+
+        for (Long stopId : nodes.keySet()) {
+            costs.put(stopId, Double.MAX_VALUE);
+        }
+        costs.put(sourceId, 0.0);
+        pq.offer(new long[]{sourceId, 0});
+
+        while (!pq.isEmpty()) {
+            Long current = pq.poll()[0];
+            if (!visited.add(current)) continue;
+            if (current.equals(destinationId)) break;
+
+            for (GraphEdge edge : adjacency.get(current)) {
+                Long neighbor = edge.getToStopId();
+                if (visited.contains(neighbor)) continue;
+                double penalty = previous.containsKey(current)
+                        && !previous.get(current).getRouteId().equals(edge.getRouteId()) ? 5.0 : 0.0;
+                double newCost = costs.get(current) + edge.getTravelTime() + penalty;
+                if (newCost < costs.get(neighbor)) {
+                    costs.put(neighbor, newCost);
+                    previous.put(neighbor, edge);
+                    pq.offer(new long[]{neighbor, (long) newCost});
+                }
+            }
+        }
+        return legacyReconstruct(previous, costs.get(destinationId));
+    }
+
+    private PathResult legacyReconstruct(Map<Long, GraphEdge> previous, double totalCost) {
+        LinkedList<GraphEdge> path = new LinkedList<>();
+        Long current = destinationId;
+        while (previous.containsKey(current)) {
+            path.addFirst(previous.get(current));
+            current = previous.get(current).getFromStopId();
+        }
+
+        List<PathSegment> segments = new ArrayList<>();
+        GraphNode source = nodes.get(sourceId);
+        segments.add(PathSegment.builder()
+                .stopName(source.getStopName())
+                .stopCode(source.getStopCode())
+                .routeName(path.isEmpty() ? "" : path.getFirst().getRouteName())
+                .routeColor(path.isEmpty() ? "" : path.getFirst().getRouteColor())
+                .isInterchange(false)
+                .build());
+        int interchanges = 0;
+        String previousRouteId = null;
+        for (GraphEdge edge : path) {
+            boolean interchange = previousRouteId != null
+                    && !previousRouteId.equals(String.valueOf(edge.getRouteId()));
+            if (interchange) interchanges++;
+            GraphNode stop = nodes.get(edge.getToStopId());
+            segments.add(PathSegment.builder()
+                    .stopName(stop.getStopName())
+                    .stopCode(stop.getStopCode())
+                    .routeName(edge.getRouteName())
+                    .routeColor(edge.getRouteColor())
+                    .isInterchange(interchange)
+                    .build());
+            previousRouteId = String.valueOf(edge.getRouteId());
+        }
+        return PathResult.builder()
+                .pathFound(true)
+                .segments(segments)
+                .totalStops(segments.size())
+                .totalInterchanges(interchanges)
+                .totalTravelTime(totalCost)
+                .build();
+    }
+}
@@ -12,6 +12,6 @@ public class CacheConfig {
 
     @Bean
     public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("metroGraph");
+        return new ConcurrentMapCacheManager();
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.moveinsync.metrobooking.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Streams JFR jdk.VirtualThreadPinned events in-process: a virtual thread that
+// blocked while pinned to its carrier (inside synchronized, or in native code)
+// for longer than the threshold. Each distinct site in our own code is logged
+// once with its stack and counted in metro.vthread.pinned; what happened
+// during startup is summarised when the app is ready.
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "metro.threads.pinning-monitor.enabled", matchIfMissing = true)
+@Slf4j
+@RequiredArgsConstructor
+public class PinnedThreadMonitor {
+
+    private static final String OWN_PACKAGE = "com.moveinsync.";
+    private static final String PINNED = "jdk.VirtualThreadPinned";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metro.threads.pinning-monitor.threshold-ms:20}")
+    private long thresholdMs;
+
+    private final Map<String, Counter> sites = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(PINNED).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(PINNED, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for virtual threads pinned longer than {} ms", thresholdMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void reportStartup() {
+        if (sites.isEmpty()) {
+            log.info("No virtual-thread pinning seen in our code during startup");
+        } else {
+            log.warn("Virtual threads were pinned during startup at: {}", sites.entrySet().stream()
+                    .map(e -> e.getKey() + " x" + (long) e.getValue().count())
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) stream.close();
+    }
+
+    void onPinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames();
+        RecordedFrame own = frames.stream()
+                .filter(f -> f.isJavaFrame() && f.getMethod().getType().getName().startsWith(OWN_PACKAGE))
+                .findFirst()
+                .orElse(null);
+        // Pinning entirely inside libraries is not ours to fix; still count it
+        String site = own == null ? "other"
+                : own.getMethod().getType().getName() + "." + own.getMethod().getName() + ":" + own.getLineNumber();
+        boolean first = !sites.containsKey(site);
+        sites.computeIfAbsent(site, s -> Counter.builder("metro.vthread.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .tag("site", s)
+                .register(meterRegistry)).increment();
+        if (first) {
+            log.warn("Virtual thread pinned for {} ms at {}:\n{}", event.getDuration().toMillis(), site,
+                    frames.stream().limit(12).map(f -> "    at " + f.getMethod().getType().getName() + "."
+                            + f.getMethod().getName() + ":" + f.getLineNumber()).collect(Collectors.joining("\n")));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.moveinsync.metrobooking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+// Only with spring.threads.virtual.enabled=true, which also moves Tomcat
+// request handling, @Async and @Scheduled work onto virtual threads.
+// Requests are then no longer capped by Tomcat's worker count, so database
+// work is capped here instead, at the Hikari pool size.
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    static BeanPostProcessor databaseConcurrencyLimiter() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    log.info("Virtual threads: database work capped at {} concurrent connections",
+                            hikari.getMaximumPoolSize());
+                    return new ConcurrencyLimitedDataSource(hikari, hikari.getMaximumPoolSize(),
+                            hikari.getConnectionTimeout());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    MeterBinder databasePermitMetrics(DataSource dataSource) {
+        return registry -> {
+            if (!(dataSource instanceof ConcurrencyLimitedDataSource limited)) return;
+            Gauge.builder("metro.db.permits.available", limited, ConcurrencyLimitedDataSource::getAvailablePermits)
+                    .description("Database permits free for new work")
+                    .register(registry);
+            Gauge.builder("metro.db.permits.waiting", limited, ConcurrencyLimitedDataSource::getWaiting)
+                    .description("Threads parked waiting for a database permit")
+                    .register(registry);
+        };
+    }
+}
@@ -1,17 +1,23 @@
 package com.moveinsync.metrobooking.controller;
 
+import com.moveinsync.metrobooking.dto.BookingHistoryPage;
 import com.moveinsync.metrobooking.dto.BookingRequest;
 import com.moveinsync.metrobooking.dto.BookingResponse;
+import com.moveinsync.metrobooking.dto.BookingSummary;
 import com.moveinsync.metrobooking.model.Booking;
 import com.moveinsync.metrobooking.model.User;
-import com.moveinsync.metrobooking.repository.UserRepository;
+import com.moveinsync.metrobooking.security.UserPrincipal;
 import com.moveinsync.metrobooking.service.BookingService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
 import java.util.List;
 
 @RestController
@@ -21,25 +27,47 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService bookingService;
-    private final UserRepository userRepository;
+    private final JsonMapper jsonMapper;
 
     @PostMapping
     public ResponseEntity<BookingResponse> createBooking(
             @Valid @RequestBody BookingRequest request,
-            Authentication authentication) {
+            @AuthenticationPrincipal UserPrincipal principal) {
 
-        User user = userRepository.findByEmail(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        // Resolved by JwtAuthFilter through UserCache; no user query here
+        User user = principal.getUser();
 
         BookingResponse response = bookingService.createBooking(request, user);
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/my-bookings")
-    public ResponseEntity<List<Booking>> getMyBookings(Authentication authentication) {
-        User user = userRepository.findByEmail(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return ResponseEntity.ok(bookingService.getUserBookings(user.getId()));
+    public ResponseEntity<List<Booking>> getMyBookings(@AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(bookingService.getUserBookings(principal.getUser().getId()));
+    }
+
+    // Paged history: {"bookings": [...], "nextCursor": "..."}. Rows are
+    // written to the response one by one rather than built up as a String.
+    @GetMapping("/history")
+    public ResponseEntity<StreamingResponseBody> getBookingHistory(
+            @AuthenticationPrincipal UserPrincipal principal,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        BookingHistoryPage page = bookingService.getBookingHistory(principal.getUser().getId(), cursor, limit);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = jsonMapper.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayPropertyStart("bookings");
+                for (BookingSummary booking : page.getBookings()) {
+                    json.writePOJO(booking);
+                }
+                json.writeEndArray();
+                json.writeStringProperty("nextCursor", page.getNextCursor());
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @GetMapping("/{reference}")
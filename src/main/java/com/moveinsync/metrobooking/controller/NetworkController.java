@@ -0,0 +1,82 @@
+package com.moveinsync.metrobooking.controller;
+
+import com.moveinsync.metrobooking.service.TopologyPayloadCache;
+import com.moveinsync.metrobooking.service.TopologyPayloadCache.Payload;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/api/network")
+@RequiredArgsConstructor
+public class NetworkController {
+
+    private final TopologyPayloadCache topologyPayloadCache;
+
+    // 0: clients revalidate on every use (a 304 when nothing changed)
+    @Value("${metro.network.cache.max-age-seconds:0}")
+    private long maxAgeSeconds;
+
+    // Stops, routes with their stops in order and every hop, in one response
+    @GetMapping
+    public ResponseEntity<byte[]> getNetwork(@RequestHeader HttpHeaders headers) {
+        return respond(topologyPayloadCache.network(), headers, cacheControl(maxAgeSeconds, false));
+    }
+
+    // Private when the endpoint sits behind the JWT filter, so only the
+    // browser keeps a copy; public ones (the stop list) may sit in shared caches
+    static CacheControl cacheControl(long maxAgeSeconds, boolean shared) {
+        CacheControl cacheControl = maxAgeSeconds > 0
+                ? CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+                : CacheControl.noCache();
+        return shared ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+    }
+
+    // Answers If-None-Match with a 304 and otherwise sends the prepared bytes,
+    // gzipped when the client accepts it; nothing is serialised here.
+    static ResponseEntity<byte[]> respond(Payload payload, HttpHeaders headers, CacheControl cacheControl) {
+        boolean gzipped = acceptsGzip(headers);
+        String etag = payload.etag(gzipped);
+        HttpStatus status = matches(headers.getIfNoneMatch(), etag) ? HttpStatus.NOT_MODIFIED : HttpStatus.OK;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status)
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (status == HttpStatus.NOT_MODIFIED) {
+            return response.build();
+        }
+        if (gzipped) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        byte[] body = gzipped ? payload.gzip() : payload.json();
+        return response.contentType(MediaType.APPLICATION_JSON).contentLength(body.length).body(body);
+    }
+
+    // Weak comparison, as RFC 9110 asks of If-None-Match
+    private static boolean matches(Iterable<String> ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*")) return true;
+            String tag = candidate.startsWith("W/") ? candidate.substring(2) : candidate;
+            if (tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpHeaders headers) {
+        for (String value : headers.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String coding : value.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
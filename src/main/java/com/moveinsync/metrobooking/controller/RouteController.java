@@ -3,6 +3,7 @@ package com.moveinsync.metrobooking.controller;
 import com.moveinsync.metrobooking.model.Route;
 import com.moveinsync.metrobooking.repository.RouteRepository;
 import com.moveinsync.metrobooking.service.GraphService;
+import com.moveinsync.metrobooking.service.ReferenceDataCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -17,6 +18,7 @@ public class RouteController {
 
     private final RouteRepository routeRepository;
     private final GraphService graphService;
+    private final ReferenceDataCache referenceDataCache;
 
     @GetMapping
     public ResponseEntity<List<Route>> getAllRoutes() {
@@ -33,7 +35,8 @@ public class RouteController {
     @PostMapping
     public ResponseEntity<Route> createRoute(@RequestBody Route route) {
         Route saved = routeRepository.save(route);
-        graphService.refreshGraph();
+        referenceDataCache.routeChanged(saved.getId());
+        graphService.applyRouteChange(saved);
         return ResponseEntity.ok(saved);
     }
 
@@ -43,7 +46,8 @@ public class RouteController {
             return ResponseEntity.notFound().build();
         }
         routeRepository.deleteById(id);
-        graphService.refreshGraph();
+        referenceDataCache.routeChanged(id);
+        graphService.applyRouteRemoval(id);
         return ResponseEntity.ok("Route deleted successfully");
     }
 }
\ No newline at end of file
@@ -3,12 +3,15 @@ package com.moveinsync.metrobooking.controller;
 import com.moveinsync.metrobooking.model.Stop;
 import com.moveinsync.metrobooking.repository.StopRepository;
 import com.moveinsync.metrobooking.service.GraphService;
+import com.moveinsync.metrobooking.service.ReferenceDataCache;
+import com.moveinsync.metrobooking.service.TopologyPayloadCache;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
 
 @RestController
 @RequestMapping("/api/stops")
@@ -18,10 +21,18 @@ public class StopController {
 
     private final StopRepository stopRepository;
     private final GraphService graphService;
+    private final ReferenceDataCache referenceDataCache;
+    private final TopologyPayloadCache topologyPayloadCache;
 
+    @Value("${metro.network.cache.max-age-seconds:0}")
+    private long maxAgeSeconds;
+
+    // Prepared once per change of the stop table, with an ETag (see NetworkController).
+    // Open to everyone (SecurityConfig), so shared caches may keep it too.
     @GetMapping
-    public ResponseEntity<List<Stop>> getAllStops() {
-        return ResponseEntity.ok(stopRepository.findAll());
+    public ResponseEntity<byte[]> getAllStops(@RequestHeader HttpHeaders headers) {
+        return NetworkController.respond(topologyPayloadCache.stops(), headers,
+                NetworkController.cacheControl(maxAgeSeconds, true));
     }
 
     @GetMapping("/{id}")
@@ -34,7 +45,9 @@ public class StopController {
     @PostMapping
     public ResponseEntity<Stop> createStop(@RequestBody Stop stop) {
         Stop saved = stopRepository.save(stop);
-        graphService.refreshGraph();
+        referenceDataCache.stopChanged(saved.getId());
+        topologyPayloadCache.stopsChanged();
+        graphService.applyStopChange(saved);
         return ResponseEntity.ok(saved);
     }
 
@@ -45,7 +58,9 @@ public class StopController {
         }
         stop.setId(id);
         Stop updated = stopRepository.save(stop);
-        graphService.refreshGraph();
+        referenceDataCache.stopChanged(id);
+        topologyPayloadCache.stopsChanged();
+        graphService.applyStopChange(updated);
         return ResponseEntity.ok(updated);
     }
 
@@ -55,7 +70,9 @@ public class StopController {
             return ResponseEntity.notFound().build();
         }
         stopRepository.deleteById(id);
-        graphService.refreshGraph();
+        referenceDataCache.stopChanged(id);
+        topologyPayloadCache.stopsChanged();
+        graphService.applyStopRemoval(id);
         return ResponseEntity.ok("Stop deleted successfully");
     }
 }
\ No newline at end of file
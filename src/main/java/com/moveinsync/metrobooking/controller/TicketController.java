@@ -0,0 +1,26 @@
+package com.moveinsync.metrobooking.controller;
+
+import com.moveinsync.metrobooking.dto.TicketValidationRequest;
+import com.moveinsync.metrobooking.dto.TicketValidationResult;
+import com.moveinsync.metrobooking.service.TicketService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/tickets")
+@RequiredArgsConstructor
+public class TicketController {
+
+    private final TicketService ticketService;
+
+    // Batch of scans from a gate controller; one result per scan, same order
+    @PostMapping("/validate")
+    public ResponseEntity<List<TicketValidationResult>> validate(
+            @Valid @RequestBody TicketValidationRequest request) {
+        return ResponseEntity.ok(ticketService.validate(request.getScans()));
+    }
+}
@@ -0,0 +1,12 @@
+package com.moveinsync.metrobooking.dto;
+
+import lombok.*;
+import java.util.List;
+
+// nextCursor is null on the last page
+@Data
+@AllArgsConstructor
+public class BookingHistoryPage {
+    private List<BookingSummary> bookings;
+    private String nextCursor;
+}
@@ -0,0 +1,23 @@
+package com.moveinsync.metrobooking.dto;
+
+import com.moveinsync.metrobooking.model.Booking;
+import lombok.*;
+import java.time.LocalDateTime;
+
+// One row of a rider's booking history, read by a constructor projection:
+// stop names only, no user, no stored route path
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingSummary {
+    private Long bookingId;
+    private String bookingReference;
+    private String sourceStop;
+    private String destinationStop;
+    private int totalStops;
+    private int totalInterchanges;
+    private double estimatedTime;
+    private String qrString;
+    private Booking.BookingStatus status;
+    private LocalDateTime createdAt;
+}
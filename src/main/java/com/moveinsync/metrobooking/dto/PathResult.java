@@ -13,4 +13,6 @@ public class PathResult {
     private int totalInterchanges;
     private double totalTravelTime;
     private boolean pathFound;
+    // Search states settled to answer the query (0 for precomputed answers)
+    private int expandedNodes;
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.moveinsync.metrobooking.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 @Data
@@ -12,4 +13,10 @@ public class PathSegment {
     private String routeName;
     private String routeColor;
     private boolean isInterchange;
+
+    // Graph ids behind the names, for the compact stored form (RoutePathCodec)
+    @JsonIgnore
+    private Long stopId;
+    @JsonIgnore
+    private Long routeId;
 }
\ No newline at end of file
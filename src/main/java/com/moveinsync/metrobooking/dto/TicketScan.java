@@ -0,0 +1,16 @@
+package com.moveinsync.metrobooking.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketScan {
+
+    @NotBlank(message = "QR payload is required")
+    private String qr;
+
+    // Stop of the scanning gate; when given, the ticket must start here
+    private Long stopId;
+}
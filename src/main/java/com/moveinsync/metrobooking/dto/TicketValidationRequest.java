@@ -0,0 +1,18 @@
+package com.moveinsync.metrobooking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketValidationRequest {
+
+    @NotEmpty(message = "At least one scan is required")
+    @Size(max = 1000, message = "At most 1000 scans per request")
+    private List<@Valid TicketScan> scans;
+}
@@ -0,0 +1,16 @@
+package com.moveinsync.metrobooking.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TicketValidationResult {
+    private String bookingReference;
+    private Outcome outcome;
+
+    public enum Outcome {
+        ADMITTED, INVALID, EXPIRED, WRONG_STOP, ALREADY_USED, CANCELLED, NOT_FOUND
+    }
+}
@@ -0,0 +1,8 @@
+package com.moveinsync.metrobooking.exception;
+
+// Work refused because a bounded pool is saturated; mapped to 503 with Retry-After
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,893 @@
+package com.moveinsync.metrobooking.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Immutable compressed-sparse-row snapshot of the metro network.
+// Stops and routes are addressed by dense int indices (ordered by database id),
+// the edges leaving stop i live in [edgeStart(i), edgeEnd(i)).
+public final class CompactGraph {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
+    // Stop side table
+    private final long[] stopIds;
+    private final String[] stopNames;
+    private final String[] stopCodes;
+    private final boolean[] interchanges;
+    private final double[] latitudes;  // radians, NaN when unknown
+    private final double[] longitudes; // radians, NaN when unknown
+    private final double[] cosLatitudes;
+    // Stop positions as points on the unit sphere (x, y, z per stop), for the search heuristic
+    private final double[] unitVectors;
+
+    // Upper bound of km per minute over all hops, 0 when coordinates are incomplete
+    private final double maxSpeed;
+
+    // Route side table and the ordered stop sequence of every route
+    private final long[] routeIds;
+    private final String[] routeNames;
+    private final String[] routeColors;
+    private final int[] routeStopOffsets;
+    private final int[] routeStops;
+    private final float[] hopTimes; // travel time from the previous stop in the sequence
+
+    // Adjacency (both directions of every hop)
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeRoutes;
+    private final float[] edgeTimes;
+
+    // Search states: one per (stop, line serving that stop). State ids of stop i
+    // live in [stateStart(i), stateEnd(i)); every edge knows the state it enters.
+    private final int[] stateOffsets;
+    private final int[] stateStops;
+    private final int[] stateRoutes;
+    private final int[] edgeTargetStates;
+
+    private CompactGraph(long[] stopIds, String[] stopNames, String[] stopCodes, boolean[] interchanges,
+                         double[] latitudes, double[] longitudes, long[] routeIds, String[] routeNames, String[] routeColors,
+                         int[] routeStopOffsets, int[] routeStops, float[] hopTimes) {
+        this.stopIds = stopIds;
+        this.stopNames = stopNames;
+        this.stopCodes = stopCodes;
+        this.interchanges = interchanges;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.routeIds = routeIds;
+        this.routeNames = routeNames;
+        this.routeColors = routeColors;
+        this.routeStopOffsets = routeStopOffsets;
+        this.routeStops = routeStops;
+        this.hopTimes = hopTimes;
+
+        int stopCount = stopIds.length;
+
+        // Count degrees, then fill both directions of every hop
+        int[] offsets = new int[stopCount + 1];
+        for (int r = 0; r < routeIds.length; r++) {
+            for (int p = routeStopOffsets[r] + 1; p < routeStopOffsets[r + 1]; p++) {
+                offsets[routeStops[p - 1] + 1]++;
+                offsets[routeStops[p] + 1]++;
+            }
+        }
+        for (int i = 0; i < stopCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        int edgeCount = offsets[stopCount];
+        int[] targets = new int[edgeCount];
+        int[] routes = new int[edgeCount];
+        float[] times = new float[edgeCount];
+        int[] cursor = Arrays.copyOf(offsets, stopCount);
+        for (int r = 0; r < routeIds.length; r++) {
+            for (int p = routeStopOffsets[r] + 1; p < routeStopOffsets[r + 1]; p++) {
+                int from = routeStops[p - 1];
+                int to = routeStops[p];
+                int e = cursor[from]++;
+                targets[e] = to;
+                routes[e] = r;
+                times[e] = hopTimes[p];
+                e = cursor[to]++;
+                targets[e] = from;
+                routes[e] = r;
+                times[e] = hopTimes[p];
+            }
+        }
+
+        // Canonical order inside each stop's range: (target, route, time)
+        for (int i = 0; i < stopCount; i++) {
+            sortRange(targets, routes, times, offsets[i], offsets[i + 1]);
+        }
+
+        this.edgeOffsets = offsets;
+        this.edgeTargets = targets;
+        this.edgeRoutes = routes;
+        this.edgeTimes = times;
+
+        // Distinct lines per stop become that stop's states
+        int[] stateOffsets = new int[stopCount + 1];
+        int[] stateRoutes = new int[edgeCount];
+        int states = 0;
+        for (int i = 0; i < stopCount; i++) {
+            stateOffsets[i] = states;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                if (indexOfRoute(stateRoutes, stateOffsets[i], states, routes[e]) < 0) {
+                    stateRoutes[states++] = routes[e];
+                }
+            }
+        }
+        stateOffsets[stopCount] = states;
+
+        int[] stateStops = new int[states];
+        for (int i = 0; i < stopCount; i++) {
+            Arrays.fill(stateStops, stateOffsets[i], stateOffsets[i + 1], i);
+        }
+
+        int[] targetStates = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int target = targets[e];
+            targetStates[e] = indexOfRoute(stateRoutes, stateOffsets[target], stateOffsets[target + 1], routes[e]);
+        }
+
+        this.stateOffsets = stateOffsets;
+        this.stateStops = stateStops;
+        this.stateRoutes = Arrays.copyOf(stateRoutes, states);
+        this.edgeTargetStates = targetStates;
+
+        this.cosLatitudes = cosines(latitudes);
+        this.unitVectors = unitVectors(latitudes, longitudes);
+        this.maxSpeed = fastestHop();
+    }
+
+    // Copy of a graph with new stop details over the same topology: the edge,
+    // route and state arrays are shared, only the stop side table is replaced
+    private CompactGraph(CompactGraph topology, String[] stopNames, String[] stopCodes, boolean[] interchanges,
+                         double[] latitudes, double[] longitudes) {
+        this.stopIds = topology.stopIds;
+        this.stopNames = stopNames;
+        this.stopCodes = stopCodes;
+        this.interchanges = interchanges;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.routeIds = topology.routeIds;
+        this.routeNames = topology.routeNames;
+        this.routeColors = topology.routeColors;
+        this.routeStopOffsets = topology.routeStopOffsets;
+        this.routeStops = topology.routeStops;
+        this.hopTimes = topology.hopTimes;
+        this.edgeOffsets = topology.edgeOffsets;
+        this.edgeTargets = topology.edgeTargets;
+        this.edgeRoutes = topology.edgeRoutes;
+        this.edgeTimes = topology.edgeTimes;
+        this.stateOffsets = topology.stateOffsets;
+        this.stateStops = topology.stateStops;
+        this.stateRoutes = topology.stateRoutes;
+        this.edgeTargetStates = topology.edgeTargetStates;
+
+        boolean moved = !Arrays.equals(latitudes, topology.latitudes) || !Arrays.equals(longitudes, topology.longitudes);
+        this.cosLatitudes = moved ? cosines(latitudes) : topology.cosLatitudes;
+        this.unitVectors = moved ? unitVectors(latitudes, longitudes) : topology.unitVectors;
+        this.maxSpeed = moved ? fastestHop() : topology.maxSpeed;
+    }
+
+    private static double[] cosines(double[] latitudes) {
+        double[] cosines = new double[latitudes.length];
+        for (int i = 0; i < latitudes.length; i++) {
+            cosines[i] = Math.cos(latitudes[i]);
+        }
+        return cosines;
+    }
+
+    private static double[] unitVectors(double[] latitudes, double[] longitudes) {
+        double[] vectors = new double[latitudes.length * 3];
+        for (int i = 0; i < latitudes.length; i++) {
+            double cosLatitude = Math.cos(latitudes[i]);
+            vectors[3 * i] = cosLatitude * Math.cos(longitudes[i]);
+            vectors[3 * i + 1] = cosLatitude * Math.sin(longitudes[i]);
+            vectors[3 * i + 2] = Math.sin(latitudes[i]);
+        }
+        return vectors;
+    }
+
+    // Km per minute of the fastest hop, 0 when some stop has no coordinates
+    private double fastestHop() {
+        for (int i = 0; i < stopIds.length; i++) {
+            if (Double.isNaN(latitudes[i]) || Double.isNaN(longitudes[i])) return 0.0;
+        }
+        double speed = 0;
+        for (int i = 0; i < stopIds.length; i++) {
+            for (int e = edgeOffsets[i]; e < edgeOffsets[i + 1]; e++) {
+                if (edgeTimes[e] > 0) speed = Math.max(speed, distanceKm(i, edgeTargets[e]) / edgeTimes[e]);
+            }
+        }
+        // A hair faster than the fastest hop so rounding never makes the bound overestimate
+        return speed * (1 + 1e-9);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Copy-on-write changes against this snapshot, see Editor
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    // ---------------------------------------------------------------- stops
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    // Dense index of a stop, or -1 if the stop is not part of the network
+    public int indexOf(long stopId) {
+        int i = Arrays.binarySearch(stopIds, stopId);
+        return i >= 0 ? i : -1;
+    }
+
+    public long stopId(int stop) {
+        return stopIds[stop];
+    }
+
+    public String stopName(int stop) {
+        return stopNames[stop];
+    }
+
+    public String stopCode(int stop) {
+        return stopCodes[stop];
+    }
+
+    public boolean isInterchange(int stop) {
+        return interchanges[stop];
+    }
+
+    public Double latitude(int stop) {
+        return Double.isNaN(latitudes[stop]) ? null : Math.toDegrees(latitudes[stop]);
+    }
+
+    public Double longitude(int stop) {
+        return Double.isNaN(longitudes[stop]) ? null : Math.toDegrees(longitudes[stop]);
+    }
+
+    // Goal-directed search is only admissible when every stop has coordinates
+    public boolean hasCoordinates() {
+        return maxSpeed > 0;
+    }
+
+    // Great-circle distance between two stops (haversine)
+    public double distanceKm(int a, int b) {
+        double sinLat = Math.sin((latitudes[b] - latitudes[a]) / 2);
+        double sinLon = Math.sin((longitudes[b] - longitudes[a]) / 2);
+        double h = sinLat * sinLat + cosLatitudes[a] * cosLatitudes[b] * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    // Lower bound of the travel time between two stops: no hop is faster than
+    // maxSpeed, and the straight chord through the earth is never longer than
+    // the great circle, so it needs no trigonometry per call
+    public double minTravelTime(int a, int b) {
+        if (maxSpeed <= 0) return 0.0;
+        double dx = unitVectors[3 * a] - unitVectors[3 * b];
+        double dy = unitVectors[3 * a + 1] - unitVectors[3 * b + 1];
+        double dz = unitVectors[3 * a + 2] - unitVectors[3 * b + 2];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz) * minutesPerUnitChord();
+    }
+
+    // Read directly by the search heuristic (SearchScratch); never written
+    double[] unitVectors() {
+        return unitVectors;
+    }
+
+    // Minutes at maxSpeed per unit of chord on the unit sphere
+    double minutesPerUnitChord() {
+        return maxSpeed > 0 ? EARTH_RADIUS_KM / maxSpeed : 0.0;
+    }
+
+    // --------------------------------------------------------------- routes
+
+    public int routeCount() {
+        return routeIds.length;
+    }
+
+    public int routeIndexOf(long routeId) {
+        int r = Arrays.binarySearch(routeIds, routeId);
+        return r >= 0 ? r : -1;
+    }
+
+    public long routeId(int route) {
+        return routeIds[route];
+    }
+
+    public String routeName(int route) {
+        return routeNames[route];
+    }
+
+    public String routeColor(int route) {
+        return routeColors[route];
+    }
+
+    // Positions [routeStopStart(r), routeStopEnd(r)) hold the stops of route r in travel order
+    public int routeStopStart(int route) {
+        return routeStopOffsets[route];
+    }
+
+    public int routeStopEnd(int route) {
+        return routeStopOffsets[route + 1];
+    }
+
+    public int routeStopAt(int position) {
+        return routeStops[position];
+    }
+
+    public float hopTime(int position) {
+        return hopTimes[position];
+    }
+
+    // ---------------------------------------------------------------- edges
+
+    public int edgeCount() {
+        return edgeTargets.length;
+    }
+
+    public int edgeStart(int stop) {
+        return edgeOffsets[stop];
+    }
+
+    public int edgeEnd(int stop) {
+        return edgeOffsets[stop + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    public int edgeRoute(int edge) {
+        return edgeRoutes[edge];
+    }
+
+    public float edgeTime(int edge) {
+        return edgeTimes[edge];
+    }
+
+    // The state an edge arrives in: (target stop, line of the edge)
+    public int edgeTargetState(int edge) {
+        return edgeTargetStates[edge];
+    }
+
+    // --------------------------------------------------------------- states
+
+    public int stateCount() {
+        return stateStops.length;
+    }
+
+    public int stateStart(int stop) {
+        return stateOffsets[stop];
+    }
+
+    public int stateEnd(int stop) {
+        return stateOffsets[stop + 1];
+    }
+
+    public int stateStop(int state) {
+        return stateStops[state];
+    }
+
+    public int stateRoute(int state) {
+        return stateRoutes[state];
+    }
+
+    // Approximate heap footprint of the primitive arrays (strings excluded)
+    public long primitiveBytes() {
+        return 8L * (stopIds.length + routeIds.length)
+                + stopIds.length + 24L * stopIds.length
+                + 4L * (routeStopOffsets.length + routeStops.length + hopTimes.length)
+                + 4L * (edgeOffsets.length + edgeTargets.length + edgeRoutes.length + edgeTimes.length)
+                + 4L * (stateOffsets.length + stateStops.length + stateRoutes.length + edgeTargetStates.length);
+    }
+
+    // ------------------------------------------------------- serialization
+
+    // Only the defining arrays are written; edges and states are re-derived on
+    // read, which is a linear pass and keeps the file small. Arrays are stored
+    // big-endian back to back so reading is a bulk copy per array.
+    int serializedSize() {
+        return 4 + 8 * stopIds.length + stringsSize(stopNames) + stringsSize(stopCodes)
+                + interchanges.length + 16 * stopIds.length
+                + 4 + 8 * routeIds.length + stringsSize(routeNames) + stringsSize(routeColors)
+                + 4 + 4 * routeStopOffsets.length + 4 + 4 * routeStops.length + 4 * hopTimes.length;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(stopIds.length);
+        out.asLongBuffer().put(stopIds);
+        skip(out, 8 * stopIds.length);
+        putStrings(out, stopNames);
+        putStrings(out, stopCodes);
+        for (boolean interchange : interchanges) {
+            out.put((byte) (interchange ? 1 : 0));
+        }
+        out.asDoubleBuffer().put(latitudes);
+        skip(out, 8 * latitudes.length);
+        out.asDoubleBuffer().put(longitudes);
+        skip(out, 8 * longitudes.length);
+
+        out.putInt(routeIds.length);
+        out.asLongBuffer().put(routeIds);
+        skip(out, 8 * routeIds.length);
+        putStrings(out, routeNames);
+        putStrings(out, routeColors);
+        out.putInt(routeStopOffsets.length);
+        out.asIntBuffer().put(routeStopOffsets);
+        skip(out, 4 * routeStopOffsets.length);
+        out.putInt(routeStops.length);
+        out.asIntBuffer().put(routeStops);
+        skip(out, 4 * routeStops.length);
+        out.asFloatBuffer().put(hopTimes);
+        skip(out, 4 * hopTimes.length);
+    }
+
+    static CompactGraph readFrom(ByteBuffer in) {
+        long[] stopIds = new long[in.getInt()];
+        in.asLongBuffer().get(stopIds);
+        skip(in, 8 * stopIds.length);
+        String[] stopNames = getStrings(in, stopIds.length);
+        String[] stopCodes = getStrings(in, stopIds.length);
+        boolean[] interchanges = new boolean[stopIds.length];
+        for (int i = 0; i < interchanges.length; i++) {
+            interchanges[i] = in.get() != 0;
+        }
+        double[] latitudes = new double[stopIds.length];
+        in.asDoubleBuffer().get(latitudes);
+        skip(in, 8 * latitudes.length);
+        double[] longitudes = new double[stopIds.length];
+        in.asDoubleBuffer().get(longitudes);
+        skip(in, 8 * longitudes.length);
+
+        long[] routeIds = new long[in.getInt()];
+        in.asLongBuffer().get(routeIds);
+        skip(in, 8 * routeIds.length);
+        String[] routeNames = getStrings(in, routeIds.length);
+        String[] routeColors = getStrings(in, routeIds.length);
+        int[] routeStopOffsets = new int[in.getInt()];
+        in.asIntBuffer().get(routeStopOffsets);
+        skip(in, 4 * routeStopOffsets.length);
+        int[] routeStops = new int[in.getInt()];
+        in.asIntBuffer().get(routeStops);
+        skip(in, 4 * routeStops.length);
+        float[] hopTimes = new float[routeStops.length];
+        in.asFloatBuffer().get(hopTimes);
+        skip(in, 4 * hopTimes.length);
+
+        if (routeStopOffsets.length != routeIds.length + 1
+                || routeStopOffsets[routeIds.length] != routeStops.length) {
+            throw new IllegalStateException("Inconsistent route layout in graph snapshot");
+        }
+        for (int stop : routeStops) {
+            if (stop < 0 || stop >= stopIds.length) {
+                throw new IllegalStateException("Graph snapshot references stop index " + stop);
+            }
+        }
+        return new CompactGraph(stopIds, stopNames, stopCodes, interchanges, latitudes, longitudes,
+                routeIds, routeNames, routeColors, routeStopOffsets, routeStops, hopTimes);
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    // Strings: one int length per entry (-1 for null), then the UTF-8 bytes of all of them
+    private static int stringsSize(String[] strings) {
+        int size = 4 * strings.length;
+        for (String s : strings) {
+            if (s != null) size += s.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return size;
+    }
+
+    private static void putStrings(ByteBuffer out, String[] strings) {
+        byte[][] encoded = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = strings[i] == null ? null : strings[i].getBytes(StandardCharsets.UTF_8);
+            out.putInt(encoded[i] == null ? -1 : encoded[i].length);
+        }
+        for (byte[] bytes : encoded) {
+            if (bytes != null) out.put(bytes);
+        }
+    }
+
+    private static String[] getStrings(ByteBuffer in, int count) {
+        int[] lengths = new int[count];
+        in.asIntBuffer().get(lengths);
+        skip(in, 4 * count);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] < 0) continue;
+            byte[] bytes = new byte[lengths[i]];
+            in.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    // Two snapshots are equal when they were built from the same stops and routes;
+    // everything else is derived from those deterministically
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CompactGraph other)) return false;
+        return Arrays.equals(stopIds, other.stopIds)
+                && Arrays.equals(stopNames, other.stopNames)
+                && Arrays.equals(stopCodes, other.stopCodes)
+                && Arrays.equals(interchanges, other.interchanges)
+                && Arrays.equals(latitudes, other.latitudes)
+                && Arrays.equals(longitudes, other.longitudes)
+                && Arrays.equals(routeIds, other.routeIds)
+                && Arrays.equals(routeNames, other.routeNames)
+                && Arrays.equals(routeColors, other.routeColors)
+                && Arrays.equals(routeStopOffsets, other.routeStopOffsets)
+                && Arrays.equals(routeStops, other.routeStops)
+                && Arrays.equals(hopTimes, other.hopTimes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(stopIds) + Arrays.hashCode(routeStops);
+    }
+
+    private static int indexOfRoute(int[] stateRoutes, int from, int to, int route) {
+        for (int s = from; s < to; s++) {
+            if (stateRoutes[s] == route) return s;
+        }
+        return -1;
+    }
+
+    private static void sortRange(int[] targets, int[] routes, float[] times, int from, int to) {
+        // Degrees are tiny (a handful of lines per station), insertion sort is the right tool
+        for (int i = from + 1; i < to; i++) {
+            int t = targets[i];
+            int r = routes[i];
+            float w = times[i];
+            int j = i - 1;
+            while (j >= from && compare(targets[j], routes[j], times[j], t, r, w) > 0) {
+                targets[j + 1] = targets[j];
+                routes[j + 1] = routes[j];
+                times[j + 1] = times[j];
+                j--;
+            }
+            targets[j + 1] = t;
+            routes[j + 1] = r;
+            times[j + 1] = w;
+        }
+    }
+
+    private static int compare(int t1, int r1, float w1, int t2, int r2, float w2) {
+        if (t1 != t2) return Integer.compare(t1, t2);
+        if (r1 != r2) return Integer.compare(r1, r2);
+        return Float.compare(w1, w2);
+    }
+
+    public static final class Builder {
+
+        private final Map<Long, StopEntry> stops = new HashMap<>();
+        private final Map<Long, RouteEntry> routes = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder addStop(long id, String name, String code, boolean interchange) {
+            return addStop(id, name, code, interchange, null, null);
+        }
+
+        // First registration of a stop wins, like the original node map did
+        public Builder addStop(long id, String name, String code, boolean interchange,
+                               Double latitude, Double longitude) {
+            stops.putIfAbsent(id, StopEntry.of(id, name, code, interchange, latitude, longitude));
+            return this;
+        }
+
+        public Builder addRoute(long id, String name, String color, long[] stopIds, float hopTime) {
+            routes.put(id, RouteEntry.of(id, name, color, stopIds, hopTime));
+            return this;
+        }
+
+        public Builder addRoute(long id, String name, String color, long[] stopIds, float[] hopTimes) {
+            routes.put(id, RouteEntry.of(id, name, color, stopIds, hopTimes));
+            return this;
+        }
+
+        public CompactGraph build() {
+            long[] stopIds = stops.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            String[] stopNames = new String[stopIds.length];
+            String[] stopCodes = new String[stopIds.length];
+            boolean[] interchanges = new boolean[stopIds.length];
+            double[] latitudes = new double[stopIds.length];
+            double[] longitudes = new double[stopIds.length];
+            for (int i = 0; i < stopIds.length; i++) {
+                StopEntry stop = stops.get(stopIds[i]);
+                stopNames[i] = stop.name();
+                stopCodes[i] = stop.code();
+                interchanges[i] = stop.interchange();
+                latitudes[i] = stop.latitude();
+                longitudes[i] = stop.longitude();
+            }
+
+            long[] routeIds = routes.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            String[] routeNames = new String[routeIds.length];
+            String[] routeColors = new String[routeIds.length];
+            int[] offsets = new int[routeIds.length + 1];
+            for (int r = 0; r < routeIds.length; r++) {
+                RouteEntry route = routes.get(routeIds[r]);
+                routeNames[r] = route.name();
+                routeColors[r] = route.color();
+                offsets[r + 1] = offsets[r] + route.stopIds().length;
+            }
+
+            int[] routeStops = new int[offsets[routeIds.length]];
+            float[] hopTimes = new float[routeStops.length];
+            for (int r = 0; r < routeIds.length; r++) {
+                RouteEntry route = routes.get(routeIds[r]);
+                for (int k = 0; k < route.stopIds().length; k++) {
+                    int stop = Arrays.binarySearch(stopIds, route.stopIds()[k]);
+                    if (stop < 0) {
+                        throw new IllegalStateException("Route " + route.id()
+                                + " references unknown stop " + route.stopIds()[k]);
+                    }
+                    routeStops[offsets[r] + k] = stop;
+                    hopTimes[offsets[r] + k] = k == 0 ? 0f : route.hopTimes()[k];
+                }
+            }
+
+            return new CompactGraph(stopIds, stopNames, stopCodes, interchanges, latitudes, longitudes,
+                    routeIds, routeNames, routeColors, offsets, routeStops, hopTimes);
+        }
+    }
+
+    // Applies a few stop/route changes to an existing snapshot and produces a new
+    // one without going back to the database. Stop detail patches share the whole
+    // topology of the base graph; route and stop removals re-derive the arrays
+    // from the base arrays in linear passes. The result equals what the Builder
+    // produces for the same final network: stops on no route are dropped, a
+    // removed stop is cut out of the routes that still list it.
+    public static final class Editor {
+
+        private final CompactGraph base;
+        private final Map<Long, StopEntry> stops = new HashMap<>();
+        private final Set<Long> removedStops = new HashSet<>();
+        private final Map<Long, RouteEntry> routes = new HashMap<>();
+        private final Set<Long> removedRoutes = new HashSet<>();
+
+        private Editor(CompactGraph base) {
+            this.base = base;
+        }
+
+        // Adds a stop a new route may reference, or replaces the details of an existing one
+        public Editor putStop(long id, String name, String code, boolean interchange,
+                              Double latitude, Double longitude) {
+            stops.put(id, StopEntry.of(id, name, code, interchange, latitude, longitude));
+            removedStops.remove(id);
+            return this;
+        }
+
+        public Editor removeStop(long id) {
+            stops.remove(id);
+            removedStops.add(id);
+            return this;
+        }
+
+        // Adds a route or replaces the route with the same id
+        public Editor putRoute(long id, String name, String color, long[] stopIds, float hopTime) {
+            routes.put(id, RouteEntry.of(id, name, color, stopIds, hopTime));
+            removedRoutes.remove(id);
+            return this;
+        }
+
+        public Editor putRoute(long id, String name, String color, long[] stopIds, float[] hopTimes) {
+            routes.put(id, RouteEntry.of(id, name, color, stopIds, hopTimes));
+            removedRoutes.remove(id);
+            return this;
+        }
+
+        public Editor removeRoute(long id) {
+            routes.remove(id);
+            removedRoutes.add(id);
+            return this;
+        }
+
+        public CompactGraph build() {
+            if (routes.isEmpty() && removedRoutes.isEmpty() && !removesListedStop()) {
+                return patchStops();
+            }
+            return rebuildTopology();
+        }
+
+        private boolean removesListedStop() {
+            for (long id : removedStops) {
+                if (base.indexOf(id) >= 0) return true;
+            }
+            return false;
+        }
+
+        private CompactGraph patchStops() {
+            if (stops.isEmpty()) return base;
+            String[] names = base.stopNames.clone();
+            String[] codes = base.stopCodes.clone();
+            boolean[] interchanges = base.interchanges.clone();
+            double[] latitudes = base.latitudes.clone();
+            double[] longitudes = base.longitudes.clone();
+            for (StopEntry stop : stops.values()) {
+                int i = base.indexOf(stop.id());
+                // A stop on no route is not part of the network
+                if (i < 0) continue;
+                names[i] = stop.name();
+                codes[i] = stop.code();
+                interchanges[i] = stop.interchange();
+                latitudes[i] = stop.latitude();
+                longitudes[i] = stop.longitude();
+            }
+            return new CompactGraph(base, names, codes, interchanges, latitudes, longitudes);
+        }
+
+        private CompactGraph rebuildTopology() {
+            int oldStops = base.stopCount();
+            boolean[] dropped = new boolean[oldStops];
+            for (long id : removedStops) {
+                int i = base.indexOf(id);
+                if (i >= 0) dropped[i] = true;
+            }
+
+            // Final route ids: untouched base routes merged with the new/replaced ones
+            long[] changed = routes.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] routeIds = new long[base.routeCount() + changed.length];
+            int[] baseRoute = new int[routeIds.length]; // base index, or -1 for a changed route
+            int routeCount = 0;
+            for (int r = 0, c = 0; r < base.routeCount() || c < changed.length; ) {
+                long next = r < base.routeCount() ? base.routeIds[r] : Long.MAX_VALUE;
+                if (c < changed.length && changed[c] <= next) {
+                    if (changed[c] == next) r++;
+                    baseRoute[routeCount] = -1;
+                    routeIds[routeCount++] = changed[c++];
+                } else {
+                    r++;
+                    if (removedRoutes.contains(next)) continue;
+                    baseRoute[routeCount] = r - 1;
+                    routeIds[routeCount++] = next;
+                }
+            }
+            routeIds = Arrays.copyOf(routeIds, routeCount);
+
+            // Stops still referenced by some route, plus the ones new to the network
+            boolean[] used = new boolean[oldStops];
+            TreeSet<Long> added = new TreeSet<>();
+            for (int k = 0; k < routeCount; k++) {
+                if (baseRoute[k] >= 0) {
+                    for (int p = base.routeStopStart(baseRoute[k]); p < base.routeStopEnd(baseRoute[k]); p++) {
+                        used[base.routeStops[p]] = true;
+                    }
+                    continue;
+                }
+                RouteEntry route = routes.get(routeIds[k]);
+                for (long id : route.stopIds()) {
+                    if (removedStops.contains(id)) continue;
+                    int i = base.indexOf(id);
+                    if (i >= 0) {
+                        used[i] = true;
+                    } else if (stops.containsKey(id)) {
+                        added.add(id);
+                    } else {
+                        throw new IllegalStateException("Route " + route.id() + " references unknown stop " + id);
+                    }
+                }
+            }
+
+            // Merge kept and added stop ids in order; remap base indices
+            int[] remap = new int[oldStops];
+            long[] stopIds = new long[oldStops + added.size()];
+            String[] names = new String[stopIds.length];
+            String[] codes = new String[stopIds.length];
+            boolean[] interchanges = new boolean[stopIds.length];
+            double[] latitudes = new double[stopIds.length];
+            double[] longitudes = new double[stopIds.length];
+            Iterator<Long> newIds = added.iterator();
+            Long pending = newIds.hasNext() ? newIds.next() : null;
+            int n = 0;
+            for (int i = 0; i <= oldStops; i++) {
+                long baseId = i < oldStops ? base.stopIds[i] : Long.MAX_VALUE;
+                while (pending != null && pending < baseId) {
+                    StopEntry stop = stops.get(pending);
+                    stopIds[n] = pending;
+                    names[n] = stop.name();
+                    codes[n] = stop.code();
+                    interchanges[n] = stop.interchange();
+                    latitudes[n] = stop.latitude();
+                    longitudes[n] = stop.longitude();
+                    n++;
+                    pending = newIds.hasNext() ? newIds.next() : null;
+                }
+                if (i == oldStops) break;
+                if (!used[i] || dropped[i]) {
+                    remap[i] = -1;
+                    continue;
+                }
+                StopEntry patch = stops.get(baseId);
+                stopIds[n] = baseId;
+                names[n] = patch != null ? patch.name() : base.stopNames[i];
+                codes[n] = patch != null ? patch.code() : base.stopCodes[i];
+                interchanges[n] = patch != null ? patch.interchange() : base.interchanges[i];
+                latitudes[n] = patch != null ? patch.latitude() : base.latitudes[i];
+                longitudes[n] = patch != null ? patch.longitude() : base.longitudes[i];
+                remap[i] = n++;
+            }
+            stopIds = Arrays.copyOf(stopIds, n);
+
+            // Route side table and sequences in the new stop indices
+            String[] routeNames = new String[routeCount];
+            String[] routeColors = new String[routeCount];
+            int[] offsets = new int[routeCount + 1];
+            int[] routeStops = new int[base.routeStops.length + routes.values().stream()
+                    .mapToInt(r -> r.stopIds().length).sum()];
+            float[] hopTimes = new float[routeStops.length];
+            int q = 0;
+            for (int k = 0; k < routeCount; k++) {
+                int first = q;
+                if (baseRoute[k] >= 0) {
+                    int r = baseRoute[k];
+                    routeNames[k] = base.routeNames[r];
+                    routeColors[k] = base.routeColors[r];
+                    for (int p = base.routeStopStart(r); p < base.routeStopEnd(r); p++) {
+                        int stop = remap[base.routeStops[p]];
+                        if (stop < 0) continue;
+                        routeStops[q] = stop;
+                        hopTimes[q] = q == first ? 0f : base.hopTimes[p];
+                        q++;
+                    }
+                } else {
+                    RouteEntry route = routes.get(routeIds[k]);
+                    routeNames[k] = route.name();
+                    routeColors[k] = route.color();
+                    for (int p = 0; p < route.stopIds().length; p++) {
+                        if (removedStops.contains(route.stopIds()[p])) continue;
+                        routeStops[q] = Arrays.binarySearch(stopIds, route.stopIds()[p]);
+                        hopTimes[q] = q == first ? 0f : route.hopTimes()[p];
+                        q++;
+                    }
+                }
+                offsets[k + 1] = q;
+            }
+
+            return new CompactGraph(stopIds, Arrays.copyOf(names, n), Arrays.copyOf(codes, n),
+                    Arrays.copyOf(interchanges, n), Arrays.copyOf(latitudes, n), Arrays.copyOf(longitudes, n),
+                    routeIds, routeNames, routeColors, offsets,
+                    Arrays.copyOf(routeStops, q), Arrays.copyOf(hopTimes, q));
+        }
+    }
+
+    private record StopEntry(long id, String name, String code, boolean interchange,
+                             double latitude, double longitude) {
+
+        static StopEntry of(long id, String name, String code, boolean interchange,
+                            Double latitude, Double longitude) {
+            return new StopEntry(id, name, code, interchange,
+                    latitude == null ? Double.NaN : Math.toRadians(latitude),
+                    longitude == null ? Double.NaN : Math.toRadians(longitude));
+        }
+    }
+
+    private record RouteEntry(long id, String name, String color, long[] stopIds, float[] hopTimes) {
+
+        static RouteEntry of(long id, String name, String color, long[] stopIds, float hopTime) {
+            float[] times = new float[stopIds.length];
+            Arrays.fill(times, hopTime);
+            if (times.length > 0) times[0] = 0f;
+            return of(id, name, color, stopIds, times);
+        }
+
+        static RouteEntry of(long id, String name, String color, long[] stopIds, float[] hopTimes) {
+            if (stopIds.length != hopTimes.length) {
+                throw new IllegalArgumentException("Route " + id + " has mismatched stops and hop times");
+            }
+            return new RouteEntry(id, name, color, stopIds.clone(), hopTimes.clone());
+        }
+    }
+}
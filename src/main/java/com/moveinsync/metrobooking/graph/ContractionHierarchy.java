@@ -0,0 +1,493 @@
+package com.moveinsync.metrobooking.graph;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+// Contraction hierarchy over the (stop, line) state graph of one snapshot.
+// The state graph has a ride edge (u, r) - (v, r) for every hop of line r and a
+// transfer edge (u, r) - (u, r') costing the transfer penalty, so interchange
+// costs survive contraction. All edges are symmetric, which lets forward and
+// backward queries share one upward graph.
+public final class ContractionHierarchy {
+
+    // Witness searches give up after settling this many states (a missed witness
+    // only costs an extra shortcut, never a wrong answer). Priority estimates
+    // only need a rough shortcut count, so they search less.
+    private static final int WITNESS_SETTLE_LIMIT = 300;
+    private static final int ESTIMATE_SETTLE_LIMIT = 40;
+
+    @Getter
+    private final long graphVersion;
+    @Getter
+    private final long buildMillis;
+    @Getter
+    private final int shortcutCount;
+
+    private final CompactGraph graph;
+    private final int[] ranks;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final double[] upWeights;
+    private final int[] upMiddles; // contracted state a shortcut bypasses, -1 for original edges
+
+    private ContractionHierarchy(CompactGraph graph, long graphVersion, long buildMillis, int shortcutCount,
+                                 int[] ranks, int[] upOffsets, int[] upTargets, double[] upWeights, int[] upMiddles) {
+        this.graph = graph;
+        this.graphVersion = graphVersion;
+        this.buildMillis = buildMillis;
+        this.shortcutCount = shortcutCount;
+        this.ranks = ranks;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+    }
+
+    public static ContractionHierarchy build(CompactGraph graph, long graphVersion,
+                                             double transferPenalty, ForkJoinPool pool) {
+        long start = System.currentTimeMillis();
+        Contractor contractor = new Contractor(graph, transferPenalty, pool);
+        contractor.contractAll();
+        return contractor.toHierarchy(graph, graphVersion, System.currentTimeMillis() - start);
+    }
+
+    public long memoryBytes() {
+        return 4L * (ranks.length + upOffsets.length + upTargets.length + upMiddles.length)
+                + 8L * upWeights.length;
+    }
+
+    // Bidirectional upward search from every state of source and of destination
+    public SearchResult shortestPath(int source, int destination) {
+        SearchScratch forward = SearchScratch.borrow();
+        SearchScratch backward = SearchScratch.borrow();
+        try {
+            return shortestPath(source, destination, forward, backward);
+        } finally {
+            SearchScratch.release(forward);
+            SearchScratch.release(backward);
+        }
+    }
+
+    private SearchResult shortestPath(int source, int destination, SearchScratch forward, SearchScratch backward) {
+        forward.begin(ranks.length);
+        backward.begin(ranks.length);
+
+        for (int s = graph.stateStart(source); s < graph.stateEnd(source); s++) {
+            forward.discover(s, 0.0, -1, 0.0);
+        }
+        for (int s = graph.stateStart(destination); s < graph.stateEnd(destination); s++) {
+            backward.discover(s, 0.0, -1, 0.0);
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        int expanded = 0;
+        boolean forwardTurn = true;
+
+        while (true) {
+            boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.minKey() < best;
+            boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.minKey() < best;
+            if (!forwardOpen && !backwardOpen) break;
+
+            boolean useForward = forwardOpen && (forwardTurn || !backwardOpen);
+            forwardTurn = !forwardTurn;
+            SearchScratch self = useForward ? forward : backward;
+            SearchScratch other = useForward ? backward : forward;
+
+            int state = self.heap.poll();
+            expanded++;
+            double distance = self.distances[state];
+
+            if (other.isDiscovered(state) && distance + other.distances[state] < best) {
+                best = distance + other.distances[state];
+                meeting = state;
+            }
+
+            for (int e = upOffsets[state]; e < upOffsets[state + 1]; e++) {
+                int next = upTargets[e];
+                double cost = distance + upWeights[e];
+                if (!self.isDiscovered(next)) {
+                    self.discover(next, cost, state, cost);
+                } else if (cost < self.distances[next] && self.heap.contains(next)) {
+                    self.improve(next, cost, state, cost);
+                }
+            }
+        }
+
+        if (meeting < 0) return SearchResult.notFound(expanded);
+        return new SearchResult(unpackPath(forward, backward, meeting), best, expanded);
+    }
+
+    private int[] unpackPath(SearchScratch forward, SearchScratch backward, int meeting) {
+        // Upward chain source..meeting followed by meeting..destination
+        IntList up = new IntList(32);
+        for (int s = meeting; s >= 0; s = forward.predecessors[s]) up.add(s);
+        up.reverse();
+        for (int s = backward.predecessors[meeting]; s >= 0; s = backward.predecessors[s]) up.add(s);
+
+        IntList states = new IntList(up.size * 2);
+        states.add(up.get(0));
+        for (int i = 1; i < up.size; i++) {
+            unpackEdge(up.get(i - 1), up.get(i), states);
+        }
+
+        // Transfers show up as consecutive states of one stop; the search
+        // result keeps the state the stop was reached in
+        IntList chain = new IntList(states.size);
+        for (int i = 0; i < states.size; i++) {
+            int state = states.get(i);
+            if (chain.size == 0 || graph.stateStop(chain.get(chain.size - 1)) != graph.stateStop(state)) {
+                chain.add(state);
+            }
+        }
+        return chain.toArray();
+    }
+
+    // Appends the states after "from" up to and including "to", expanding shortcuts
+    private void unpackEdge(int from, int to, IntList out) {
+        IntList stack = new IntList(16);
+        stack.add(to);
+        stack.add(from);
+        while (stack.size > 0) {
+            int a = stack.pop();
+            int b = stack.pop();
+            int middle = middleOf(a, b);
+            if (middle < 0) {
+                out.add(b);
+            } else {
+                // Process (a, middle) before (middle, b)
+                stack.add(b);
+                stack.add(middle);
+                stack.add(middle);
+                stack.add(a);
+            }
+        }
+    }
+
+    private int middleOf(int a, int b) {
+        int low = ranks[a] < ranks[b] ? a : b;
+        int high = low == a ? b : a;
+        for (int e = upOffsets[low]; e < upOffsets[low + 1]; e++) {
+            if (upTargets[e] == high) return upMiddles[e];
+        }
+        throw new IllegalStateException("No hierarchy edge between states " + a + " and " + b);
+    }
+
+    // Contraction state: a symmetric adjacency list per state that grows as shortcuts are added
+    private static final class Contractor {
+
+        private final int n;
+        private final ForkJoinPool pool;
+        private final int[][] targets;
+        private final double[][] weights;
+        private final int[][] middles;
+        private final int[] sizes;
+
+        private final boolean[] contracted;
+        private final boolean[] inRound;
+        private final int[] deletedNeighbors;
+        private final int[] priorities;
+        private final int[] ranks;
+        private int nextRank;
+        private int shortcuts;
+
+        Contractor(CompactGraph graph, double transferPenalty, ForkJoinPool pool) {
+            this.n = graph.stateCount();
+            this.pool = pool;
+            this.targets = new int[n][];
+            this.weights = new double[n][];
+            this.middles = new int[n][];
+            this.sizes = new int[n];
+            this.contracted = new boolean[n];
+            this.inRound = new boolean[n];
+            this.deletedNeighbors = new int[n];
+            this.priorities = new int[n];
+            this.ranks = new int[n];
+
+            for (int s = 0; s < n; s++) {
+                targets[s] = new int[4];
+                weights[s] = new double[4];
+                middles[s] = new int[4];
+            }
+
+            for (int stop = 0; stop < graph.stopCount(); stop++) {
+                // Ride edges, each hop once
+                for (int e = graph.edgeStart(stop); e < graph.edgeEnd(stop); e++) {
+                    int target = graph.edgeTarget(e);
+                    if (target <= stop) continue;
+                    int from = indexOfState(graph, stop, graph.edgeRoute(e));
+                    addEdge(from, graph.edgeTargetState(e), graph.edgeTime(e), -1);
+                }
+                // Transfer edges between the lines serving the stop
+                for (int a = graph.stateStart(stop); a < graph.stateEnd(stop); a++) {
+                    for (int b = a + 1; b < graph.stateEnd(stop); b++) {
+                        addEdge(a, b, transferPenalty, -1);
+                    }
+                }
+            }
+        }
+
+        private static int indexOfState(CompactGraph graph, int stop, int route) {
+            for (int s = graph.stateStart(stop); s < graph.stateEnd(stop); s++) {
+                if (graph.stateRoute(s) == route) return s;
+            }
+            throw new IllegalStateException("Stop " + stop + " has no state for route " + route);
+        }
+
+        void contractAll() {
+            int[] remaining = IntStream.range(0, n).toArray();
+            int remainingCount = n;
+            parallel(remaining, remainingCount, this::updatePriority);
+
+            while (remainingCount > 0) {
+                // Independent set: states whose priority beats every uncontracted neighbour
+                int[] candidates = remaining;
+                int candidateCount = remainingCount;
+                parallel(candidates, candidateCount, v -> inRound[v] = isLocalMinimum(v));
+                int[] round = Arrays.stream(candidates, 0, candidateCount).filter(v -> inRound[v]).toArray();
+
+                // Shortcuts of the whole round are found in parallel on the unchanged graph;
+                // witnesses may not pass through any state contracted in this round
+                Shortcuts[] found = new Shortcuts[round.length];
+                parallel(IntStream.range(0, round.length).toArray(), round.length,
+                        i -> found[i] = findShortcuts(round[i], true));
+
+                IntList touched = new IntList(round.length * 4);
+                for (int i = 0; i < round.length; i++) {
+                    int v = round[i];
+                    Shortcuts s = found[i];
+                    for (int k = 0; k < s.size; k++) {
+                        addEdge(s.from[k], s.to[k], s.weight[k], v);
+                    }
+                    shortcuts += s.size;
+                    contracted[v] = true;
+                    ranks[v] = nextRank++;
+                    for (int k = 0; k < sizes[v]; k++) {
+                        int u = targets[v][k];
+                        if (!contracted[u]) {
+                            deletedNeighbors[u]++;
+                            touched.add(u);
+                        }
+                    }
+                }
+                for (int v : round) inRound[v] = false;
+
+                int kept = 0;
+                for (int i = 0; i < remainingCount; i++) {
+                    if (!contracted[remaining[i]]) remaining[kept++] = remaining[i];
+                }
+                remainingCount = kept;
+
+                int[] dirty = Arrays.stream(touched.toArray()).distinct().filter(u -> !contracted[u]).toArray();
+                parallel(dirty, dirty.length, this::updatePriority);
+            }
+        }
+
+        private boolean isLocalMinimum(int v) {
+            for (int k = 0; k < sizes[v]; k++) {
+                int u = targets[v][k];
+                if (contracted[u] || u == v) continue;
+                if (priorities[u] < priorities[v]
+                        || (priorities[u] == priorities[v] && tieBreak(u) < tieBreak(v))) return false;
+            }
+            return true;
+        }
+
+        // Scrambled ids, so runs of equal priority along a line don't contract one state per round
+        private static long tieBreak(int v) {
+            long h = v * 0x9E3779B97F4A7C15L;
+            return ((h ^ (h >>> 29)) << 32) | v;
+        }
+
+        private void updatePriority(int v) {
+            int degree = 0;
+            for (int k = 0; k < sizes[v]; k++) {
+                if (!contracted[targets[v][k]]) degree++;
+            }
+            // Edge difference plus contracted neighbours keeps the hierarchy shallow and uniform
+            priorities[v] = findShortcuts(v, false).size - degree + deletedNeighbors[v];
+        }
+
+        private Shortcuts findShortcuts(int v, boolean excludeRound) {
+            Shortcuts result = new Shortcuts();
+            SearchScratch scratch = SearchScratch.borrow();
+            try {
+                collectShortcuts(v, excludeRound, scratch, result);
+            } finally {
+                SearchScratch.release(scratch);
+            }
+            return result;
+        }
+
+        private void collectShortcuts(int v, boolean excludeRound, SearchScratch scratch, Shortcuts result) {
+
+            for (int i = 0; i < sizes[v]; i++) {
+                int u = targets[v][i];
+                if (contracted[u]) continue;
+
+                double limit = 0;
+                for (int j = i + 1; j < sizes[v]; j++) {
+                    if (!contracted[targets[v][j]]) limit = Math.max(limit, weights[v][i] + weights[v][j]);
+                }
+                if (limit == 0) continue;
+
+                witnessSearch(u, v, limit, excludeRound,
+                        excludeRound ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT, scratch);
+                for (int j = i + 1; j < sizes[v]; j++) {
+                    int w = targets[v][j];
+                    if (contracted[w]) continue;
+                    double through = weights[v][i] + weights[v][j];
+                    if (!scratch.isDiscovered(w) || scratch.distances[w] > through) {
+                        result.add(u, w, through);
+                    }
+                }
+            }
+        }
+
+        private void witnessSearch(int source, int skip, double limit, boolean excludeRound,
+                                   int settleLimit, SearchScratch scratch) {
+            scratch.begin(n);
+            scratch.discover(source, 0.0, -1, 0.0);
+            int settled = 0;
+            while (!scratch.heap.isEmpty() && settled < settleLimit && scratch.heap.minKey() <= limit) {
+                int x = scratch.heap.poll();
+                settled++;
+                double distance = scratch.distances[x];
+                for (int k = 0; k < sizes[x]; k++) {
+                    int y = targets[x][k];
+                    if (y == skip || contracted[y] || (excludeRound && inRound[y])) continue;
+                    double cost = distance + weights[x][k];
+                    if (!scratch.isDiscovered(y)) {
+                        scratch.discover(y, cost, x, cost);
+                    } else if (cost < scratch.distances[y] && scratch.heap.contains(y)) {
+                        scratch.improve(y, cost, x, cost);
+                    }
+                }
+            }
+        }
+
+        private void addEdge(int a, int b, double weight, int middle) {
+            upsert(a, b, weight, middle);
+            upsert(b, a, weight, middle);
+        }
+
+        // Keeps a single (cheapest) edge per pair of states
+        private void upsert(int a, int b, double weight, int middle) {
+            for (int k = 0; k < sizes[a]; k++) {
+                if (targets[a][k] == b) {
+                    if (weight < weights[a][k]) {
+                        weights[a][k] = weight;
+                        middles[a][k] = middle;
+                    }
+                    return;
+                }
+            }
+            if (sizes[a] == targets[a].length) {
+                int capacity = sizes[a] * 2;
+                targets[a] = Arrays.copyOf(targets[a], capacity);
+                weights[a] = Arrays.copyOf(weights[a], capacity);
+                middles[a] = Arrays.copyOf(middles[a], capacity);
+            }
+            targets[a][sizes[a]] = b;
+            weights[a][sizes[a]] = weight;
+            middles[a][sizes[a]] = middle;
+            sizes[a]++;
+        }
+
+        ContractionHierarchy toHierarchy(CompactGraph graph, long graphVersion, long buildMillis) {
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                int up = 0;
+                for (int k = 0; k < sizes[v]; k++) {
+                    if (ranks[targets[v][k]] > ranks[v]) up++;
+                }
+                offsets[v + 1] = offsets[v] + up;
+            }
+            int[] upTargets = new int[offsets[n]];
+            double[] upWeights = new double[offsets[n]];
+            int[] upMiddles = new int[offsets[n]];
+            for (int v = 0; v < n; v++) {
+                int e = offsets[v];
+                for (int k = 0; k < sizes[v]; k++) {
+                    if (ranks[targets[v][k]] > ranks[v]) {
+                        upTargets[e] = targets[v][k];
+                        upWeights[e] = weights[v][k];
+                        upMiddles[e] = middles[v][k];
+                        e++;
+                    }
+                }
+            }
+            return new ContractionHierarchy(graph, graphVersion, buildMillis, shortcuts,
+                    ranks, offsets, upTargets, upWeights, upMiddles);
+        }
+
+        private void parallel(int[] items, int count, IntConsumer action) {
+            try {
+                pool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> action.accept(items[i]))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Contraction interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Contraction failed", e.getCause());
+            }
+        }
+    }
+
+    private static final class Shortcuts {
+        int[] from = new int[4];
+        int[] to = new int[4];
+        double[] weight = new double[4];
+        int size;
+
+        void add(int a, int b, double w) {
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                weight = Arrays.copyOf(weight, size * 2);
+            }
+            from[size] = a;
+            to[size] = b;
+            weight[size] = w;
+            size++;
+        }
+    }
+
+    private static final class IntList {
+        int[] values;
+        int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(capacity, 4)];
+        }
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        void reverse() {
+            for (int i = 0, j = size - 1; i < j; i++, j--) {
+                int t = values[i];
+                values[i] = values[j];
+                values[j] = t;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.moveinsync.metrobooking.graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Binary file holding one CompactGraph snapshot so a restarted instance can
+// serve routes before the database has been read. Layout:
+//
+//   magic "MGRF" | format | graph version | payload length | CRC32C of payload | payload
+//
+// The payload is CompactGraph's own array layout. Reading maps the file and
+// bulk-copies the arrays out of the mapping; a wrong magic, format or checksum
+// is reported as an IOException and the caller falls back to the database.
+public final class GraphSnapshotFile {
+
+    private static final int MAGIC = 0x4D475246; // "MGRF"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8;
+
+    private GraphSnapshotFile() {
+    }
+
+    // Writes next to the target and renames, so readers never see a half-written file
+    public static void write(Path path, MetroGraph graph) throws IOException {
+        CompactGraph compact = graph.getCompact();
+        int payloadBytes = compact.serializedSize();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadBytes);
+        buffer.position(HEADER_BYTES);
+        compact.writeTo(buffer);
+        if (buffer.position() != HEADER_BYTES + payloadBytes) {
+            throw new IllegalStateException("Graph snapshot size mismatch");
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), HEADER_BYTES, payloadBytes);
+        buffer.putInt(0, MAGIC)
+                .putInt(4, FORMAT)
+                .putLong(8, graph.getVersion())
+                .putLong(16, payloadBytes)
+                .putLong(24, crc.getValue());
+
+        Path directory = path.toAbsolutePath().getParent();
+        if (directory != null) Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, buffer.array());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    public static MetroGraph read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Graph snapshot " + path + " is truncated");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a graph snapshot");
+            }
+            if (mapped.getInt(4) != FORMAT) {
+                throw new IOException("Graph snapshot format " + mapped.getInt(4) + " is not supported");
+            }
+            long version = mapped.getLong(8);
+            long payloadBytes = mapped.getLong(16);
+            if (payloadBytes != size - HEADER_BYTES) {
+                throw new IOException("Graph snapshot " + path + " is truncated");
+            }
+
+            ByteBuffer payload = mapped.slice(HEADER_BYTES, (int) payloadBytes);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != mapped.getLong(24)) {
+                throw new IOException("Graph snapshot " + path + " failed its checksum");
+            }
+
+            try {
+                return new MetroGraph(CompactGraph.readFrom(payload), version);
+            } catch (RuntimeException e) {
+                throw new IOException("Graph snapshot " + path + " is corrupt", e);
+            }
+        }
+    }
+}
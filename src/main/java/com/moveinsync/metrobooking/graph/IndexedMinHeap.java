@@ -0,0 +1,105 @@
+package com.moveinsync.metrobooking.graph;
+
+import java.util.Arrays;
+
+// Binary min-heap over int items with double keys and decrease-key.
+// Positions are only meaningful for items inserted since the last clear();
+// callers track that themselves (see SearchScratch), so clearing is O(1).
+final class IndexedMinHeap {
+
+    private int[] heap;
+    private int[] positions;
+    private double[] keys;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        heap = new int[Math.max(capacity, 1)];
+        positions = new int[Math.max(capacity, 1)];
+        keys = new double[Math.max(capacity, 1)];
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity > positions.length) {
+            heap = Arrays.copyOf(heap, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    double minKey() {
+        return keys[heap[0]];
+    }
+
+    // Only valid for items inserted since the last clear()
+    boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    void insert(int item, double key) {
+        keys[item] = key;
+        heap[size] = item;
+        positions[item] = size;
+        siftUp(size++);
+    }
+
+    void decreaseKey(int item, double key) {
+        keys[item] = key;
+        siftUp(positions[item]);
+    }
+
+    int poll() {
+        int min = heap[0];
+        positions[min] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int i) {
+        int item = heap[i];
+        double key = keys[item];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[i] = p;
+            positions[p] = i;
+            i = parent;
+        }
+        heap[i] = item;
+        positions[item] = i;
+    }
+
+    private void siftDown(int i) {
+        int item = heap[i];
+        double key = keys[item];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) child = right;
+            int c = heap[child];
+            if (key <= keys[c]) break;
+            heap[i] = c;
+            positions[c] = i;
+            i = child;
+        }
+        heap[i] = item;
+        positions[item] = i;
+    }
+}
@@ -1,42 +1,116 @@
 package com.moveinsync.metrobooking.graph;
 
-import lombok.*;
+import lombok.Getter;
 import java.util.*;
 
-@Data
+// Read-only view over a CompactGraph snapshot. The node/edge objects of the
+// original map-based API are materialised on demand, the search code works on
+// the compact arrays directly.
 public class MetroGraph {
 
-    private Map<Long, List<GraphEdge>> adjacencyList = new HashMap<>();
-    private Map<Long, GraphNode> nodes = new HashMap<>();
+    @Getter
+    private final CompactGraph compact;
+    @Getter
+    private final long version;
 
-    public void addNode(GraphNode node) {
-        nodes.put(node.getStopId(), node);
-        adjacencyList.putIfAbsent(node.getStopId(), new ArrayList<>());
+    // Optional precomputed indexes for this exact snapshot
+    @Getter
+    private final RouteTable routeTable;
+    @Getter
+    private final ContractionHierarchy hierarchy;
+
+    private volatile Map<Long, GraphNode> nodes;
+    private volatile Map<Long, List<GraphEdge>> adjacencyList;
+
+    public MetroGraph(CompactGraph compact) {
+        this(compact, 0L);
+    }
+
+    public MetroGraph(CompactGraph compact, long version) {
+        this(compact, version, null, null);
     }
 
-    public void addEdge(GraphEdge edge) {
-        adjacencyList.get(edge.getFromStopId()).add(edge);
+    private MetroGraph(CompactGraph compact, long version, RouteTable routeTable, ContractionHierarchy hierarchy) {
+        this.compact = compact;
+        this.version = version;
+        this.routeTable = routeTable;
+        this.hierarchy = hierarchy;
+    }
+
+    public MetroGraph withRouteTable(RouteTable table) {
+        if (table != null && table.getGraphVersion() != version) {
+            throw new IllegalArgumentException("Route table of version " + table.getGraphVersion()
+                    + " does not belong to graph version " + version);
+        }
+        return new MetroGraph(compact, version, table, hierarchy);
+    }
 
-        GraphEdge reverse = new GraphEdge(
-                edge.getToStopId(),
-                edge.getFromStopId(),
-                edge.getRouteId(),
-                edge.getRouteName(),
-                edge.getRouteColor(),
-                edge.getTravelTime()
-        );
-        adjacencyList.get(edge.getToStopId()).add(reverse);
+    public MetroGraph withHierarchy(ContractionHierarchy ch) {
+        if (ch != null && ch.getGraphVersion() != version) {
+            throw new IllegalArgumentException("Hierarchy of version " + ch.getGraphVersion()
+                    + " does not belong to graph version " + version);
+        }
+        return new MetroGraph(compact, version, routeTable, ch);
     }
 
     public List<GraphEdge> getNeighbors(Long stopId) {
-        return adjacencyList.getOrDefault(stopId, Collections.emptyList());
+        int stop = compact.indexOf(stopId);
+        if (stop < 0) return Collections.emptyList();
+        return edgesOf(stop);
     }
 
     public boolean containsStop(Long stopId) {
-        return nodes.containsKey(stopId);
+        return compact.indexOf(stopId) >= 0;
     }
 
     public int getTotalStops() {
-        return nodes.size();
+        return compact.stopCount();
+    }
+
+    public Map<Long, GraphNode> getNodes() {
+        Map<Long, GraphNode> view = nodes;
+        if (view == null) {
+            Map<Long, GraphNode> built = new LinkedHashMap<>();
+            for (int i = 0; i < compact.stopCount(); i++) {
+                built.put(compact.stopId(i), new GraphNode(
+                        compact.stopId(i),
+                        compact.stopName(i),
+                        compact.stopCode(i),
+                        compact.isInterchange(i)
+                ));
+            }
+            view = Collections.unmodifiableMap(built);
+            nodes = view;
+        }
+        return view;
+    }
+
+    public Map<Long, List<GraphEdge>> getAdjacencyList() {
+        Map<Long, List<GraphEdge>> view = adjacencyList;
+        if (view == null) {
+            Map<Long, List<GraphEdge>> built = new LinkedHashMap<>();
+            for (int i = 0; i < compact.stopCount(); i++) {
+                built.put(compact.stopId(i), edgesOf(i));
+            }
+            view = Collections.unmodifiableMap(built);
+            adjacencyList = view;
+        }
+        return view;
+    }
+
+    private List<GraphEdge> edgesOf(int stop) {
+        List<GraphEdge> edges = new ArrayList<>(compact.edgeEnd(stop) - compact.edgeStart(stop));
+        for (int e = compact.edgeStart(stop); e < compact.edgeEnd(stop); e++) {
+            int route = compact.edgeRoute(e);
+            edges.add(new GraphEdge(
+                    compact.stopId(stop),
+                    compact.stopId(compact.edgeTarget(e)),
+                    compact.routeId(route),
+                    compact.routeName(route),
+                    compact.routeColor(route),
+                    compact.edgeTime(e)
+            ));
+        }
+        return Collections.unmodifiableList(edges);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,231 @@
+package com.moveinsync.metrobooking.graph;
+
+// Line-aware Dijkstra over the (stop, line) states of a CompactGraph.
+// Riding on along the same line costs the hop time, boarding another line
+// additionally costs the transfer penalty. Because the line is part of the
+// state, a stop reached first on the "wrong" line no longer hides a cheaper
+// continuation on another one. Working memory is borrowed from a pool
+// (SearchScratch), so a query allocates nothing but its result.
+public final class RouteSearch {
+
+    private final double transferPenalty;
+
+    public RouteSearch(double transferPenalty) {
+        this.transferPenalty = transferPenalty;
+    }
+
+    public double getTransferPenalty() {
+        return transferPenalty;
+    }
+
+    public SearchResult shortestPath(CompactGraph graph, int source, int destination, SearchMode mode) {
+        return switch (mode) {
+            case DIJKSTRA -> shortestPath(graph, source, destination);
+            case ASTAR -> shortestPathAStar(graph, source, destination);
+            case BIDIRECTIONAL -> shortestPathBidirectional(graph, source, destination);
+        };
+    }
+
+    public SearchResult shortestPath(CompactGraph graph, int source, int destination) {
+        return shortestPath(graph, source, destination, false);
+    }
+
+    // A* with the straight-line travel time at top speed as heuristic; plain
+    // Dijkstra when some stop has no coordinates
+    public SearchResult shortestPathAStar(CompactGraph graph, int source, int destination) {
+        return shortestPath(graph, source, destination, graph.hasCoordinates());
+    }
+
+    private SearchResult shortestPath(CompactGraph graph, int source, int destination, boolean goalDirected) {
+        SearchScratch scratch = SearchScratch.borrow();
+        try {
+            int last = run(graph, source, destination, goalDirected, scratch);
+            return last < 0 ? SearchResult.notFound(scratch.expanded) : result(scratch, last, scratch.expanded);
+        } finally {
+            SearchScratch.release(scratch);
+        }
+    }
+
+    // Settles every reachable state from source into the caller's scratch
+    void shortestPathTree(CompactGraph graph, int source, SearchScratch scratch) {
+        run(graph, source, -1, false, scratch);
+    }
+
+    private int run(CompactGraph graph, int source, int destination, boolean goalDirected, SearchScratch scratch) {
+        scratch.begin(graph.stateCount());
+        IndexedMinHeap heap = scratch.heap;
+
+        if (goalDirected) scratch.aimAt(graph, source, destination, false);
+
+        // The first line boarded is free: every line at the source starts at 0
+        double sourcePotential = goalDirected ? scratch.potential(source) : 0.0;
+        for (int s = graph.stateStart(source); s < graph.stateEnd(source); s++) {
+            scratch.potentials[s] = sourcePotential;
+            scratch.discover(s, 0.0, -1, sourcePotential);
+        }
+
+        while (!heap.isEmpty()) {
+            int state = heap.poll();
+            scratch.expanded++;
+
+            int stop = graph.stateStop(state);
+            if (stop == destination) {
+                return state;
+            }
+
+            int route = graph.stateRoute(state);
+            double distance = scratch.distances[state];
+            for (int e = graph.edgeStart(stop); e < graph.edgeEnd(stop); e++) {
+                int next = graph.edgeTargetState(e);
+                double cost = distance + graph.edgeTime(e)
+                        + (graph.edgeRoute(e) == route ? 0.0 : transferPenalty);
+
+                if (!scratch.isDiscovered(next)) {
+                    double potential = goalDirected ? scratch.potential(graph.edgeTarget(e)) : 0.0;
+                    scratch.potentials[next] = potential;
+                    scratch.discover(next, cost, state, cost + potential);
+                } else if (cost < scratch.distances[next] && heap.contains(next)) {
+                    scratch.improve(next, cost, state, cost + scratch.potentials[next]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Bidirectional search with the averaged potential (h_dest - h_source) / 2,
+    // which keeps both directions consistent; without coordinates the potential
+    // is zero and this is a plain bidirectional Dijkstra
+    public SearchResult shortestPathBidirectional(CompactGraph graph, int source, int destination) {
+        SearchScratch forward = SearchScratch.borrow();
+        SearchScratch backward = SearchScratch.borrow();
+        try {
+            return bidirectional(graph, source, destination, forward, backward);
+        } finally {
+            SearchScratch.release(forward);
+            SearchScratch.release(backward);
+        }
+    }
+
+    private SearchResult bidirectional(CompactGraph graph, int source, int destination,
+                                       SearchScratch forward, SearchScratch backward) {
+        forward.begin(graph.stateCount());
+        backward.begin(graph.stateCount());
+        boolean goalDirected = graph.hasCoordinates();
+        // Both directions read the one memo in the forward scratch
+        if (goalDirected) forward.aimAt(graph, source, destination, true);
+
+        double sourcePotential = potential(forward, source, goalDirected);
+        for (int s = graph.stateStart(source); s < graph.stateEnd(source); s++) {
+            forward.potentials[s] = sourcePotential;
+            forward.discover(s, 0.0, -1, sourcePotential);
+        }
+        double destinationPotential = -potential(forward, destination, goalDirected);
+        for (int s = graph.stateStart(destination); s < graph.stateEnd(destination); s++) {
+            backward.potentials[s] = destinationPotential;
+            backward.discover(s, 0.0, -1, destinationPotential);
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        boolean forwardTurn = true;
+
+        while (!forward.heap.isEmpty() && !backward.heap.isEmpty()
+                && forward.heap.minKey() + backward.heap.minKey() < best) {
+            if (forwardTurn) {
+                int state = forward.heap.poll();
+                forward.expanded++;
+                int stop = graph.stateStop(state);
+                int route = graph.stateRoute(state);
+                double distance = forward.distances[state];
+
+                for (int e = graph.edgeStart(stop); e < graph.edgeEnd(stop); e++) {
+                    int next = graph.edgeTargetState(e);
+                    double cost = distance + graph.edgeTime(e)
+                            + (graph.edgeRoute(e) == route ? 0.0 : transferPenalty);
+
+                    if (!forward.isDiscovered(next)) {
+                        double p = potential(forward, graph.edgeTarget(e), goalDirected);
+                        forward.potentials[next] = p;
+                        forward.discover(next, cost, state, cost + p);
+                    } else if (cost < forward.distances[next] && forward.heap.contains(next)) {
+                        forward.improve(next, cost, state, cost + forward.potentials[next]);
+                    } else {
+                        continue;
+                    }
+                    if (backward.isDiscovered(next) && cost + backward.distances[next] < best) {
+                        best = cost + backward.distances[next];
+                        meeting = next;
+                    }
+                }
+            } else {
+                // Backward step: which states lead into this one? Any line at the
+                // neighbouring stop, paying the penalty unless it is the same line.
+                int state = backward.heap.poll();
+                backward.expanded++;
+                int stop = graph.stateStop(state);
+                int route = graph.stateRoute(state);
+                double distance = backward.distances[state];
+
+                for (int e = graph.edgeStart(stop); e < graph.edgeEnd(stop); e++) {
+                    if (graph.edgeRoute(e) != route) continue;
+                    int previousStop = graph.edgeTarget(e);
+                    double previousPotential = -potential(forward, previousStop, goalDirected);
+                    for (int prev = graph.stateStart(previousStop); prev < graph.stateEnd(previousStop); prev++) {
+                        double cost = distance + graph.edgeTime(e)
+                                + (graph.stateRoute(prev) == route ? 0.0 : transferPenalty);
+
+                        if (!backward.isDiscovered(prev)) {
+                            backward.potentials[prev] = previousPotential;
+                            backward.discover(prev, cost, state, cost + previousPotential);
+                        } else if (cost < backward.distances[prev] && backward.heap.contains(prev)) {
+                            backward.improve(prev, cost, state, cost + backward.potentials[prev]);
+                        } else {
+                            continue;
+                        }
+                        if (forward.isDiscovered(prev) && cost + forward.distances[prev] < best) {
+                            best = cost + forward.distances[prev];
+                            meeting = prev;
+                        }
+                    }
+                }
+            }
+            forwardTurn = !forwardTurn;
+        }
+
+        int expanded = forward.expanded + backward.expanded;
+        if (meeting < 0) return SearchResult.notFound(expanded);
+        return new SearchResult(joinChains(forward, backward, meeting), best, expanded);
+    }
+
+    private static double potential(SearchScratch forward, int stop, boolean goalDirected) {
+        return goalDirected ? forward.potential(stop) : 0.0;
+    }
+
+    // Forward chain source..meeting, then the backward successors up to the destination
+    private static int[] joinChains(SearchScratch forward, SearchScratch backward, int meeting) {
+        int head = 0;
+        for (int s = meeting; s >= 0; s = forward.predecessors[s]) head++;
+        int tail = 0;
+        for (int s = backward.predecessors[meeting]; s >= 0; s = backward.predecessors[s]) tail++;
+
+        int[] states = new int[head + tail];
+        for (int s = meeting, i = head - 1; s >= 0; s = forward.predecessors[s]) {
+            states[i--] = s;
+        }
+        for (int s = backward.predecessors[meeting], i = head; s >= 0; s = backward.predecessors[s]) {
+            states[i++] = s;
+        }
+        return states;
+    }
+
+    static SearchResult result(SearchScratch scratch, int last, int expanded) {
+        int length = 0;
+        for (int s = last; s >= 0; s = scratch.predecessors[s]) length++;
+
+        int[] states = new int[length];
+        for (int s = last, i = length - 1; s >= 0; s = scratch.predecessors[s]) {
+            states[i--] = s;
+        }
+        return new SearchResult(states, scratch.distances[last], expanded);
+    }
+}
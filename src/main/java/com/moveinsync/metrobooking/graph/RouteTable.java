@@ -0,0 +1,167 @@
+package com.moveinsync.metrobooking.graph;
+
+import lombok.Getter;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Precomputed answers for every (source, destination) pair of one graph version.
+// Row "source" of the flat arrays holds the cost, interchange count and final
+// state of the best trip to each destination; the predecessor row walks the
+// chain of states back to the source, so a lookup is O(path length).
+public final class RouteTable {
+
+    @Getter
+    private final long graphVersion;
+    @Getter
+    private final long buildMillis;
+
+    private final int stopCount;
+    private final int stateCount;
+    private final float[] costs;
+    private final short[] interchanges;
+    private final int[] lastStates;
+    private final int[] predecessors;
+
+    private RouteTable(long graphVersion, long buildMillis, int stopCount, int stateCount,
+                       float[] costs, short[] interchanges, int[] lastStates, int[] predecessors) {
+        this.graphVersion = graphVersion;
+        this.buildMillis = buildMillis;
+        this.stopCount = stopCount;
+        this.stateCount = stateCount;
+        this.costs = costs;
+        this.interchanges = interchanges;
+        this.lastStates = lastStates;
+        this.predecessors = predecessors;
+    }
+
+    // Largest array the JVM reliably allocates
+    private static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    // Bytes the table needs for a graph, used to decide whether it is worth building
+    public static long estimateBytes(CompactGraph graph) {
+        long pairs = (long) graph.stopCount() * graph.stopCount();
+        return pairs * (4 + 2 + 4) + (long) graph.stopCount() * graph.stateCount() * 4;
+    }
+
+    // Whether the flat arrays of the table can be indexed by int at all
+    public static boolean fitsInArrays(CompactGraph graph) {
+        return (long) graph.stopCount() * graph.stopCount() <= MAX_CELLS
+                && (long) graph.stopCount() * graph.stateCount() <= MAX_CELLS;
+    }
+
+    public static RouteTable build(CompactGraph graph, long graphVersion, RouteSearch search, ForkJoinPool pool) {
+        long start = System.currentTimeMillis();
+        int n = graph.stopCount();
+        int states = graph.stateCount();
+        if (!fitsInArrays(graph)) {
+            throw new IllegalArgumentException("Route table for " + n + " stops and " + states
+                    + " states does not fit in int-indexed arrays");
+        }
+
+        int pairs = Math.multiplyExact(n, n);
+        float[] costs = new float[pairs];
+        short[] interchanges = new short[pairs];
+        int[] lastStates = new int[pairs];
+        int[] predecessors = new int[Math.multiplyExact(n, states)];
+
+        // One search per source, each on a pooled scratch
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(source -> {
+                SearchScratch scratch = SearchScratch.borrow();
+                try {
+                    search.shortestPathTree(graph, source, scratch);
+                    fillRow(graph, scratch, source, costs, interchanges, lastStates, predecessors);
+                } finally {
+                    SearchScratch.release(scratch);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Route table build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Route table build failed", e.getCause());
+        }
+
+        return new RouteTable(graphVersion, System.currentTimeMillis() - start, n, states,
+                costs, interchanges, lastStates, predecessors);
+    }
+
+    private static void fillRow(CompactGraph graph, SearchScratch scratch, int source,
+                                float[] costs, short[] interchanges, int[] lastStates, int[] predecessors) {
+        int n = graph.stopCount();
+        int states = graph.stateCount();
+        int predRow = source * states;
+
+        for (int s = 0; s < states; s++) {
+            predecessors[predRow + s] = scratch.isDiscovered(s) ? scratch.predecessors[s] : -1;
+        }
+
+        for (int destination = 0; destination < n; destination++) {
+            int cell = source * n + destination;
+            int best = -1;
+            for (int s = graph.stateStart(destination); s < graph.stateEnd(destination); s++) {
+                if (scratch.isDiscovered(s) && (best < 0 || scratch.distances[s] < scratch.distances[best])) {
+                    best = s;
+                }
+            }
+            if (best < 0 || destination == source) {
+                costs[cell] = Float.POSITIVE_INFINITY;
+                lastStates[cell] = -1;
+                continue;
+            }
+
+            // Count line changes along the chain (the source state carries no line of its own)
+            int changes = 0;
+            for (int s = best; predecessors[predRow + s] >= 0; s = predecessors[predRow + s]) {
+                int previous = predecessors[predRow + s];
+                if (predecessors[predRow + previous] >= 0
+                        && graph.stateRoute(previous) != graph.stateRoute(s)) {
+                    changes++;
+                }
+            }
+
+            costs[cell] = (float) scratch.distances[best];
+            interchanges[cell] = (short) Math.min(changes, Short.MAX_VALUE);
+            lastStates[cell] = best;
+        }
+    }
+
+    public boolean isReachable(int source, int destination) {
+        return lastStates[source * stopCount + destination] >= 0;
+    }
+
+    public double cost(int source, int destination) {
+        return costs[source * stopCount + destination];
+    }
+
+    public int interchanges(int source, int destination) {
+        return interchanges[source * stopCount + destination];
+    }
+
+    public SearchResult lookup(int source, int destination) {
+        int last = lastStates[source * stopCount + destination];
+        if (last < 0) return SearchResult.notFound(0);
+
+        int predRow = source * stateCount;
+        int length = 0;
+        for (int s = last; s >= 0; s = predecessors[predRow + s]) length++;
+
+        int[] chain = new int[length];
+        for (int s = last, i = length - 1; s >= 0; s = predecessors[predRow + s]) {
+            chain[i--] = s;
+        }
+        return new SearchResult(chain, costs[source * stopCount + destination], 0);
+    }
+
+    public long memoryBytes() {
+        return 4L * costs.length + 2L * interchanges.length + 4L * lastStates.length + 4L * predecessors.length;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteTable[version=" + graphVersion + ", stops=" + stopCount
+                + ", bytes=" + memoryBytes() + ", buildMillis=" + buildMillis + "]";
+    }
+}
@@ -0,0 +1,8 @@
+package com.moveinsync.metrobooking.graph;
+
+// How PathFinderService searches when no precomputed index answers the query
+public enum SearchMode {
+    DIJKSTRA,
+    ASTAR,
+    BIDIRECTIONAL
+}
@@ -0,0 +1,22 @@
+package com.moveinsync.metrobooking.graph;
+
+import lombok.Value;
+
+// Outcome of one search: the chain of (stop, line) states from source to
+// destination, its cost including transfer penalties, and how many states
+// the search settled to find it.
+@Value
+public class SearchResult {
+
+    int[] states;
+    double cost;
+    int expanded;
+
+    public boolean isFound() {
+        return states.length > 0;
+    }
+
+    public static SearchResult notFound(int expanded) {
+        return new SearchResult(new int[0], Double.POSITIVE_INFINITY, expanded);
+    }
+}
@@ -0,0 +1,140 @@
+package com.moveinsync.metrobooking.graph;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Working memory of one search at a time. A state's distance and predecessor are
+// only valid when its stamp equals the current epoch, so starting a new query
+// is a counter increment instead of an array fill.
+//
+// Searches borrow a scratch from a shared pool and hand it back, as TicketSigner
+// does with its Macs: a ThreadLocal would size a fresh one for every query under
+// virtual threads, where each request runs on a new thread. Searches never block,
+// so the pool settles at about two scratches per carrier thread.
+final class SearchScratch {
+
+    private static final Queue<SearchScratch> IDLE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger CREATED = new AtomicInteger();
+
+    private int epoch;
+    private int[] stamps;
+    double[] distances;
+    int[] predecessors;
+    double[] potentials; // heuristic part of the queue key, for goal-directed searches
+    // Heuristic per stop, worked out once per query (see aimAt)
+    private int[] potentialStamps = new int[0];
+    private double[] stopPotentials = new double[0];
+    private double[] unitVectors;
+    private double minutesPerUnit;
+    private double goalX, goalY, goalZ;
+    private double originX, originY, originZ;
+    private boolean averaged;
+    int expanded;
+    final IndexedMinHeap heap;
+
+    static SearchScratch borrow() {
+        SearchScratch scratch = IDLE.poll();
+        return scratch != null ? scratch : new SearchScratch(1024);
+    }
+
+    static void release(SearchScratch scratch) {
+        scratch.unitVectors = null; // let an old graph go
+        IDLE.offer(scratch);
+    }
+
+    // Scratches allocated since startup, for tests
+    static int created() {
+        return CREATED.get();
+    }
+
+    SearchScratch(int capacity) {
+        CREATED.incrementAndGet();
+        stamps = new int[capacity];
+        distances = new double[capacity];
+        predecessors = new int[capacity];
+        potentials = new double[capacity];
+        heap = new IndexedMinHeap(capacity);
+    }
+
+    void begin(int stateCount) {
+        if (stateCount > stamps.length) {
+            int capacity = Math.max(stateCount, stamps.length + (stamps.length >> 1));
+            stamps = new int[capacity];
+            distances = new double[capacity];
+            predecessors = new int[capacity];
+            potentials = new double[capacity];
+            heap.ensureCapacity(capacity);
+            Arrays.fill(potentialStamps, 0); // stamped in the epochs about to be reused
+            epoch = 0;
+        }
+        if (++epoch == 0) {
+            // Wrapped around after 2^32 queries: old stamps could collide
+            Arrays.fill(stamps, 0);
+            Arrays.fill(potentialStamps, 0);
+            epoch = 1;
+        }
+        heap.clear();
+        expanded = 0;
+    }
+
+    boolean isDiscovered(int state) {
+        return stamps[state] == epoch;
+    }
+
+    // Discovered and no longer in the queue
+    boolean isSettled(int state) {
+        return stamps[state] == epoch && !heap.contains(state);
+    }
+
+    void discover(int state, double distance, int predecessor, double key) {
+        stamps[state] = epoch;
+        distances[state] = distance;
+        predecessors[state] = predecessor;
+        heap.insert(state, key);
+    }
+
+    void improve(int state, double distance, int predecessor, double key) {
+        distances[state] = distance;
+        predecessors[state] = predecessor;
+        heap.decreaseKey(state, key);
+    }
+
+    // Sets up potential(stop) for this query, after begin(): the lower bound of
+    // the time to the destination, or for bidirectional search the average
+    // (to destination - from source) / 2 that keeps both directions consistent.
+    // The goal's position is read once here instead of once per state.
+    void aimAt(CompactGraph graph, int source, int destination, boolean bidirectional) {
+        if (potentialStamps.length < graph.stopCount()) {
+            potentialStamps = new int[graph.stopCount()];
+            stopPotentials = new double[graph.stopCount()];
+        }
+        unitVectors = graph.unitVectors();
+        minutesPerUnit = graph.minutesPerUnitChord();
+        goalX = unitVectors[3 * destination];
+        goalY = unitVectors[3 * destination + 1];
+        goalZ = unitVectors[3 * destination + 2];
+        originX = unitVectors[3 * source];
+        originY = unitVectors[3 * source + 1];
+        originZ = unitVectors[3 * source + 2];
+        averaged = bidirectional;
+    }
+
+    double potential(int stop) {
+        if (potentialStamps[stop] == epoch) return stopPotentials[stop];
+        double x = unitVectors[3 * stop];
+        double y = unitVectors[3 * stop + 1];
+        double z = unitVectors[3 * stop + 2];
+        double potential = chord(x - goalX, y - goalY, z - goalZ);
+        if (averaged) potential = (potential - chord(x - originX, y - originY, z - originZ)) / 2;
+        potential *= minutesPerUnit;
+        potentialStamps[stop] = epoch;
+        stopPotentials[stop] = potential;
+        return potential;
+    }
+
+    private static double chord(double dx, double dy, double dz) {
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
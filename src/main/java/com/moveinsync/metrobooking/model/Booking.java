@@ -1,22 +1,36 @@
 package com.moveinsync.metrobooking.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        // Keyset pages of a rider's history (BookingRepository.findHistory*)
+        @Index(name = "idx_bookings_user_created", columnList = "user_id, created_at, id")
+}, uniqueConstraints = {
+        // The key BookingPartitionRepository.partition leaves behind: a partitioned
+        // table cannot hold a unique key without created_at, so ddl-auto=update
+        // must not add a reference-only one back
+        @UniqueConstraint(name = "uk_bookings_reference_created", columnNames = {"booking_reference", "created_at"})
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Booking {
 
+    public static final int ID_BLOCK = 50;
+
+    // Sequence ids in blocks of 50 so inserts can be JDBC-batched; identity
+    // columns force Hibernate to insert row by row to read each id back
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", sequenceName = "bookings_seq", allocationSize = Booking.ID_BLOCK)
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String bookingReference;
 
     @ManyToOne
@@ -31,9 +45,16 @@ public class Booking {
     @JoinColumn(name = "destination_stop_id", nullable = false)
     private Stop destinationStop;
 
+    // Legacy: the PathSegment list as JSON. New bookings leave it null and
+    // store routePathEncoded instead (see RoutePathCodec, RoutePathMigration).
     @Column(columnDefinition = "TEXT")
     private String routePath;
 
+    // bytea on PostgreSQL
+    @JsonIgnore
+    @Column(name = "route_path_encoded", length = 4096)
+    private byte[] routePathEncoded;
+
     private int totalStops;
     private int totalInterchanges;
     private double estimatedTime;
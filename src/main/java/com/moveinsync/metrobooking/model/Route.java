@@ -2,10 +2,14 @@ package com.moveinsync.metrobooking.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.util.List;
 
 @Entity
 @Table(name = "routes")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "metro-routes")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -23,6 +27,7 @@ public class Route {
     private String color;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "metro-route-stops")
     @JoinTable(
             name = "route_stops",
             joinColumns = @JoinColumn(name = "route_id"),
@@ -2,9 +2,13 @@ package com.moveinsync.metrobooking.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "stops")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "metro-stops")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
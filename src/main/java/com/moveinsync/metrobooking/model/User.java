@@ -1,10 +1,12 @@
 package com.moveinsync.metrobooking.model;
 
+import com.moveinsync.metrobooking.security.UserChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserChangeListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,38 @@
+package com.moveinsync.metrobooking.repository;
+
+import com.moveinsync.metrobooking.model.Booking;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+// Booking ids used to come from an identity column. A bookings_seq created by
+// schema update on such a database starts at 1 and would hand out ids that
+// are already taken, so on startup the sequence is moved past the highest id.
+// Hibernate's pooled optimizer uses a fetched value v as the top of the block
+// v - ID_BLOCK + 1 .. v, hence the restart at max + ID_BLOCK.
+@Repository
+@Slf4j
+public class BookingIdSequence {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Taking the repository makes sure the schema exists before we look at it
+    public BookingIdSequence(DataSource dataSource, BookingRepository bookingRepository) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @PostConstruct
+    void align() {
+        long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM bookings", Long.class);
+        if (maxId == 0) return;
+        long next = jdbcTemplate.queryForObject("SELECT nextval('bookings_seq')", Long.class);
+        if (next - Booking.ID_BLOCK < maxId) {
+            long restart = maxId + Booking.ID_BLOCK;
+            jdbcTemplate.execute("ALTER SEQUENCE bookings_seq RESTART WITH " + restart);
+            log.info("Moved bookings_seq from {} to {} past existing booking id {}", next, restart, maxId);
+        }
+    }
+}
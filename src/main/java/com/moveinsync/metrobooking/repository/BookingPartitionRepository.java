@@ -0,0 +1,136 @@
+package com.moveinsync.metrobooking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// PostgreSQL DDL for range-partitioning bookings by month of created_at.
+// Partitions are named bookings_pYYYYMM; bookings_default catches anything
+// outside them. Call inside a transaction: PostgreSQL DDL is transactional,
+// so a failed conversion leaves the plain table as it was.
+@Repository
+public class BookingPartitionRepository {
+
+    public static final String DEFAULT_PARTITION = "bookings_default";
+
+    private static final String PREFIX = "bookings_p";
+    private static final Pattern NAME = Pattern.compile("bookings_p\\d{6}");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+    // pg_try_advisory_xact_lock key, so only one instance maintains partitions at a time
+    private static final long MAINTENANCE_LOCK = 0x6d6574726f_7061L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportTemplate;
+
+    public BookingPartitionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.exportTemplate = new JdbcTemplate(dataSource);
+        this.exportTemplate.setFetchSize(1000);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PREFIX + month.format(MONTH);
+    }
+
+    // The month of a bookings_pYYYYMM partition, or null for any other table
+    public static YearMonth monthOf(String partition) {
+        return NAME.matcher(partition).matches()
+                ? YearMonth.parse(partition.substring(PREFIX.length()), MONTH)
+                : null;
+    }
+
+    public boolean tryLock() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)",
+                Boolean.class, MAINTENANCE_LOCK));
+    }
+
+    public boolean isPartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_partitioned_table"
+                + " WHERE partrelid = to_regclass('bookings'))", Boolean.class));
+    }
+
+    // Months of the oldest and newest booking, or null when there are none
+    public YearMonth[] createdAtRange() {
+        return jdbcTemplate.queryForObject("SELECT MIN(created_at), MAX(created_at) FROM bookings", (rs, row) -> {
+            Timestamp min = rs.getTimestamp(1);
+            Timestamp max = rs.getTimestamp(2);
+            return min == null ? null : new YearMonth[]{
+                    YearMonth.from(min.toLocalDateTime()), YearMonth.from(max.toLocalDateTime())};
+        });
+    }
+
+    // Replaces the plain bookings table with one partitioned by month, first
+    // to last inclusive, and copies every row across. The primary key becomes
+    // (id, created_at) and the reference is unique per created_at, as
+    // PostgreSQL requires the partition key in unique constraints; references
+    // are still unique by construction (BookingReferenceGenerator).
+    public void partition(YearMonth first, YearMonth last) {
+        jdbcTemplate.execute("LOCK TABLE bookings IN ACCESS EXCLUSIVE MODE");
+        jdbcTemplate.execute("ALTER TABLE bookings RENAME TO bookings_unpartitioned");
+        jdbcTemplate.execute("CREATE TABLE bookings (LIKE bookings_unpartitioned INCLUDING DEFAULTS"
+                + " INCLUDING CONSTRAINTS) PARTITION BY RANGE (created_at)");
+        jdbcTemplate.execute("ALTER TABLE bookings ALTER COLUMN created_at SET NOT NULL");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            createPartition(month);
+        }
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF bookings DEFAULT");
+        jdbcTemplate.execute("INSERT INTO bookings SELECT * FROM bookings_unpartitioned");
+        jdbcTemplate.execute("DROP TABLE bookings_unpartitioned");
+        // Constraint and index names are free again now the old table is gone
+        jdbcTemplate.execute("ALTER TABLE bookings ADD PRIMARY KEY (id, created_at)");
+        jdbcTemplate.execute("ALTER TABLE bookings ADD CONSTRAINT uk_bookings_reference_created"
+                + " UNIQUE (booking_reference, created_at)");
+        jdbcTemplate.execute("CREATE INDEX idx_bookings_user_created ON bookings (user_id, created_at, id)");
+        jdbcTemplate.execute("ALTER TABLE bookings ADD FOREIGN KEY (user_id) REFERENCES users (id)");
+        jdbcTemplate.execute("ALTER TABLE bookings ADD FOREIGN KEY (source_stop_id) REFERENCES stops (id)");
+        jdbcTemplate.execute("ALTER TABLE bookings ADD FOREIGN KEY (destination_stop_id) REFERENCES stops (id)");
+    }
+
+    public List<String> partitions() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+                + " WHERE i.inhparent = to_regclass('bookings') ORDER BY c.relname", String.class);
+    }
+
+    public void createPartition(YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF bookings"
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    public long countRows(String partition) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + checked(partition), Long.class);
+        return count == null ? 0 : count;
+    }
+
+    // Each row of the partition as a JSON object, in id order; returns how many
+    public long exportRows(String partition, Consumer<String> rows) {
+        long[] count = {0};
+        exportTemplate.query("SELECT row_to_json(b)::text FROM " + checked(partition) + " b ORDER BY id", rs -> {
+            rows.accept(rs.getString(1));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    public void detachAndDrop(String partition) {
+        jdbcTemplate.execute("ALTER TABLE bookings DETACH PARTITION " + checked(partition));
+        jdbcTemplate.execute("DROP TABLE " + checked(partition));
+    }
+
+    // Table names go into SQL text; only ever our own month partitions
+    private static String checked(String partition) {
+        if (!NAME.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Not a bookings month partition: " + partition);
+        }
+        return partition;
+    }
+}
@@ -1,14 +1,56 @@
 package com.moveinsync.metrobooking.repository;
 
+import com.moveinsync.metrobooking.dto.BookingSummary;
 import com.moveinsync.metrobooking.model.Booking;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     Optional<Booking> findByBookingReference(String bookingReference);
+
+    // Lookup bounded on createdAt, so a partitioned bookings table is only
+    // searched in the partitions that window falls in
+    @Query("SELECT b FROM Booking b WHERE b.bookingReference = :reference"
+            + " AND b.createdAt >= :from AND b.createdAt < :to")
+    Optional<Booking> findByBookingReferenceCreatedBetween(@Param("reference") String reference,
+                                                           @Param("from") LocalDateTime from,
+                                                           @Param("to") LocalDateTime to);
     List<Booking> findByUserId(Long userId);
     boolean existsByBookingReference(String bookingReference);
+
+    // Booking history, newest first, keyset-paged on (createdAt, id) so every
+    // page is an index range scan on idx_bookings_user_created however deep
+    // the rider has scrolled. Stops are joined once; nothing else is loaded.
+    String HISTORY_SELECT = "SELECT new com.moveinsync.metrobooking.dto.BookingSummary("
+            + "b.id, b.bookingReference, s.name, d.name, b.totalStops, b.totalInterchanges, b.estimatedTime, "
+            + "b.qrString, b.status, b.createdAt) "
+            + "FROM Booking b JOIN b.sourceStop s JOIN b.destinationStop d WHERE b.user.id = :userId ";
+    String HISTORY_ORDER = "ORDER BY b.createdAt DESC, b.id DESC";
+
+    @Query(HISTORY_SELECT + HISTORY_ORDER)
+    List<BookingSummary> findHistory(@Param("userId") Long userId, Limit limit);
+
+    @Query(HISTORY_SELECT
+            + "AND (b.createdAt < :createdAt OR (b.createdAt = :createdAt AND b.id < :id)) " + HISTORY_ORDER)
+    List<BookingSummary> findHistoryBefore(@Param("userId") Long userId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id,
+                                           Limit limit);
+
+    // (reference, status) pairs; consume inside a transaction and close the stream
+    @Query("SELECT b.bookingReference, b.status FROM Booking b WHERE b.status IN :statuses")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<Object[]> streamReferencesByStatusIn(@Param("statuses") Collection<Booking.BookingStatus> statuses);
 }
\ No newline at end of file
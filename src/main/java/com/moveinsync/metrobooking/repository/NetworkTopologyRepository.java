@@ -0,0 +1,113 @@
+package com.moveinsync.metrobooking.repository;
+
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+
+// Read-only loader for the graph: streams stops and ordered route_stops with
+// two plain SQL projections straight into CompactGraph.Builder, so building the
+// network never materialises managed Route/Stop entities or their lazy
+// collections. Call it inside a (read-only) transaction so the driver can use
+// a cursor with the configured fetch size.
+@Repository
+@Slf4j
+public class NetworkTopologyRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    // Only stops that lie on some route are part of the network
+    private static final String STOPS_SQL = """
+            SELECT s.id, s.name, s.code, s.is_interchange, s.latitude, s.longitude
+            FROM stops s
+            WHERE s.id IN (SELECT rs.stop_id FROM route_stops rs)
+            """;
+
+    // One row per route position; routes without stops still come back once
+    private static final String ROUTE_STOPS_SQL = """
+            SELECT r.id, r.name, r.color, rs.stop_id
+            FROM routes r
+            LEFT JOIN route_stops rs ON rs.route_id = r.id
+            ORDER BY r.id, rs.stop_order
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public NetworkTopologyRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    public LoadedNetwork load(float hopTime) {
+        long start = System.nanoTime();
+        CompactGraph.Builder builder = CompactGraph.builder();
+
+        int[] stopRows = {0};
+        jdbcTemplate.query(STOPS_SQL, rs -> {
+            builder.addStop(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBoolean(4),
+                    rs.getObject(5, Double.class), rs.getObject(6, Double.class));
+            stopRows[0]++;
+        });
+
+        RouteCollector routes = new RouteCollector(builder, hopTime);
+        jdbcTemplate.query(ROUTE_STOPS_SQL, rs -> {
+            Long stopId = rs.getObject(4, Long.class);
+            routes.accept(rs.getLong(1), rs.getString(2), rs.getString(3), stopId);
+        });
+        routes.flush();
+
+        CompactGraph graph = builder.build();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        log.info("Loaded network topology: {} stop rows, {} route rows, {} route_stop rows in {} ms",
+                stopRows[0], routes.routeRows, routes.routeStopRows, millis);
+        return new LoadedNetwork(graph, stopRows[0], routes.routeRows, routes.routeStopRows, millis);
+    }
+
+    public record LoadedNetwork(CompactGraph graph, int stopRows, int routeRows, int routeStopRows, long millis) {
+    }
+
+    // Rows arrive ordered by route, so a route is complete when the id changes
+    private static final class RouteCollector {
+
+        private final CompactGraph.Builder builder;
+        private final float hopTime;
+        private long routeId = -1;
+        private String name;
+        private String color;
+        private long[] stops = new long[64];
+        private int size;
+        private int routeRows;
+        private int routeStopRows;
+
+        RouteCollector(CompactGraph.Builder builder, float hopTime) {
+            this.builder = builder;
+            this.hopTime = hopTime;
+        }
+
+        void accept(long id, String name, String color, Long stopId) {
+            if (id != routeId) {
+                flush();
+                routeId = id;
+                this.name = name;
+                this.color = color;
+                routeRows++;
+            }
+            if (stopId != null) {
+                if (size == stops.length) stops = Arrays.copyOf(stops, size * 2);
+                stops[size++] = stopId;
+                routeStopRows++;
+            }
+        }
+
+        void flush() {
+            if (routeId >= 0) {
+                builder.addRoute(routeId, name, color, Arrays.copyOf(stops, size), hopTime);
+            }
+            routeId = -1;
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.moveinsync.metrobooking.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+// Bulk access to the two route path columns of bookings, for moving old rows
+// from JSON to the encoded form and reporting what each takes up.
+@Repository
+public class RoutePathRepository {
+
+    public record JsonRoutePath(long bookingId, String json) {
+    }
+
+    public record EncodedRoutePath(long bookingId, byte[] encoded) {
+    }
+
+    public record StorageReport(long jsonRows, long jsonBytes, long encodedRows, long encodedBytes) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RoutePathRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // Keyset page of bookings still holding only JSON, by id
+    public List<JsonRoutePath> findJsonOnly(long afterId, int limit) {
+        return jdbcTemplate.query("SELECT id, route_path FROM bookings WHERE id > ?"
+                        + " AND route_path_encoded IS NULL AND route_path IS NOT NULL ORDER BY id LIMIT ?",
+                (rs, row) -> new JsonRoutePath(rs.getLong(1), rs.getString(2)), afterId, limit);
+    }
+
+    // Stores the encoded form and drops the JSON; rows encoded meanwhile are left alone
+    public int storeEncoded(List<EncodedRoutePath> paths) {
+        if (paths.isEmpty()) return 0;
+        int[][] counts = jdbcTemplate.batchUpdate("UPDATE bookings SET route_path_encoded = ?, route_path = NULL"
+                        + " WHERE id = ? AND route_path_encoded IS NULL", paths, paths.size(),
+                (ps, path) -> {
+                    ps.setBytes(1, path.encoded());
+                    ps.setLong(2, path.bookingId());
+                });
+        int updated = 0;
+        for (int count : counts[0]) updated += Math.max(count, 0);
+        return updated;
+    }
+
+    public StorageReport storageReport() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(route_path), COALESCE(SUM(OCTET_LENGTH(route_path)), 0),"
+                        + " COUNT(route_path_encoded), COALESCE(SUM(OCTET_LENGTH(route_path_encoded)), 0)"
+                        + " FROM bookings",
+                (rs, row) -> new StorageReport(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+    }
+}
@@ -1,11 +1,23 @@
 package com.moveinsync.metrobooking.repository;
 
 import com.moveinsync.metrobooking.model.Route;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RouteRepository extends JpaRepository<Route, Long> {
     Optional<Route> findByName(String name);
-}
\ No newline at end of file
+
+    // Ids from the query cache; routes and their stop lists from the second-level cache
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "metro-reference-queries")
+    })
+    List<Route> findAll();
+}
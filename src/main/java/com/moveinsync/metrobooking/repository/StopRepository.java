@@ -1,8 +1,12 @@
 package com.moveinsync.metrobooking.repository;
 
 import com.moveinsync.metrobooking.model.Stop;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -10,4 +14,12 @@ public interface StopRepository extends JpaRepository<Stop, Long> {
     Optional<Stop> findByCode(String code);
     Optional<Stop> findByName(String name);
     boolean existsByCode(String code);
-}
\ No newline at end of file
+
+    // Ids from the query cache, stops from the second-level cache
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "metro-reference-queries")
+    })
+    List<Stop> findAll();
+}
@@ -0,0 +1,83 @@
+package com.moveinsync.metrobooking.repository;
+
+import com.moveinsync.metrobooking.service.BookingReferenceGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Marks tickets as used at the gate. Each redemption is one conditional
+// UPDATE, so two gates scanning the same ticket cannot both admit it, and a
+// whole batch of scans goes to the database as one JDBC batch.
+@Repository
+public class TicketRedemptionRepository {
+
+    private static final String REDEEM_SQL =
+            "UPDATE bookings SET status = 'USED' WHERE booking_reference = ? AND status = 'CONFIRMED'";
+    // Bounded on created_at like BookingRepository.findByBookingReferenceCreatedBetween,
+    // so a partitioned table only touches the partitions the issue date falls in
+    private static final String REDEEM_CREATED_BETWEEN_SQL = REDEEM_SQL + " AND created_at >= ? AND created_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TicketRedemptionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // For each reference, whether this call moved it from CONFIRMED to USED
+    public boolean[] redeem(List<String> references) {
+        boolean[] redeemed = new boolean[references.size()];
+        List<Integer> dated = new ArrayList<>();
+        List<Integer> undated = new ArrayList<>();
+        for (int i = 0; i < references.size(); i++) {
+            (BookingReferenceGenerator.dateOf(references.get(i)) != null ? dated : undated).add(i);
+        }
+        if (!dated.isEmpty()) {
+            // A day either side of the issue date (UTC) covers createdAt being local time in any zone
+            record(redeemed, dated, jdbcTemplate.batchUpdate(REDEEM_CREATED_BETWEEN_SQL, dated, dated.size(),
+                    (ps, i) -> {
+                        LocalDate issued = BookingReferenceGenerator.dateOf(references.get(i));
+                        ps.setString(1, references.get(i));
+                        ps.setTimestamp(2, Timestamp.valueOf(issued.minusDays(1).atStartOfDay()));
+                        ps.setTimestamp(3, Timestamp.valueOf(issued.plusDays(2).atStartOfDay()));
+                    }));
+        }
+        if (!undated.isEmpty()) {
+            record(redeemed, undated, jdbcTemplate.batchUpdate(REDEEM_SQL, undated, undated.size(),
+                    (ps, i) -> ps.setString(1, references.get(i))));
+        }
+        return redeemed;
+    }
+
+    private static void record(boolean[] redeemed, List<Integer> indexes, int[][] counts) {
+        for (int j = 0; j < indexes.size(); j++) {
+            // A driver that runs the batch without row counts cannot tell an
+            // admitted ticket from a replay; re-reading the status would not
+            // either (another gate may have set USED), so refuse to guess
+            if (counts[0][j] == Statement.SUCCESS_NO_INFO) {
+                throw new IllegalStateException("JDBC driver reported no row count for a ticket redemption");
+            }
+            redeemed[indexes.get(j)] = counts[0][j] > 0;
+        }
+    }
+
+    // Current status of the given references; unknown ones are absent
+    public Map<String, String> statuses(List<String> references) {
+        if (references.isEmpty()) return Collections.emptyMap();
+        String placeholders = String.join(",", Collections.nCopies(references.size(), "?"));
+        Map<String, String> statuses = new HashMap<>();
+        jdbcTemplate.query("SELECT booking_reference, status FROM bookings WHERE booking_reference IN ("
+                + placeholders + ")", rs -> {
+            statuses.put(rs.getString(1), rs.getString(2));
+        }, references.toArray());
+        return statuses;
+    }
+}
@@ -0,0 +1,121 @@
+package com.moveinsync.metrobooking.security;
+
+import com.moveinsync.metrobooking.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// BCrypt on a small dedicated pool with a fixed queue, so a login storm burns
+// at most `threads` cores and cannot occupy every request thread with
+// hashing. Once the queue is full further logins and registrations are
+// refused straight away (ServiceBusyException -> 503) rather than piling up
+// behind it. Callers still wait for their own hash, off the CPU.
+//
+// upgradeEncoding reports any hash whose cost differs from the configured
+// strength, so DaoAuthenticationProvider rehashes it on the next successful
+// login (see CustomUserDetailsService.updatePassword).
+@Component
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer queueWait;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(@Value("${metro.password.bcrypt-strength:10}") int strength,
+                                  @Value("${metro.password.threads:0}") int threads,
+                                  @Value("${metro.password.queue-size:64}") int queueSize,
+                                  MeterRegistry meterRegistry) {
+        this.strength = strength;
+        this.bcrypt = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "password-hash-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("metro.password.hash").tag("op", "encode")
+                .description("Time spent hashing or checking a password").register(meterRegistry);
+        this.matchesTimer = Timer.builder("metro.password.hash").tag("op", "matches")
+                .description("Time spent hashing or checking a password").register(meterRegistry);
+        this.queueWait = Timer.builder("metro.password.queue.wait")
+                .description("Time a password hash waited for a free hashing thread").register(meterRegistry);
+        this.rejected = Counter.builder("metro.password.rejected")
+                .description("Logins and registrations refused because the hashing queue was full")
+                .register(meterRegistry);
+        Gauge.builder("metro.password.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a thread").register(meterRegistry);
+        Gauge.builder("metro.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Password hashes in progress").register(meterRegistry);
+        log.info("Password hashing: BCrypt cost {}, {} threads, queue of {}", strength, poolSize, queueSize);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesTimer, () -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) return false;
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    private <T> T run(Timer timer, Callable<T> hash) {
+        long queued = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                queueWait.record(System.nanoTime() - queued, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(hash);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Too many sign-ins right now, please retry shortly");
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ServiceBusyException("Interrupted while waiting for password check");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
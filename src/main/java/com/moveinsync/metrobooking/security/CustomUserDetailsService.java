@@ -1,26 +1,40 @@
 package com.moveinsync.metrobooking.security;
 
 import com.moveinsync.metrobooking.repository.UserRepository;
+import com.moveinsync.metrobooking.model.User;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
-import java.util.List;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Override
-    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        return userRepository.findByEmail(email)
-                .map(user -> new org.springframework.security.core.userdetails.User(
-                        user.getEmail(),
-                        user.getPassword(),
-                        List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()))
-                ))
-                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + email));
+    public UserPrincipal loadUserByUsername(String email) throws UsernameNotFoundException {
+        UserPrincipal principal = userCache.get(email, e -> userRepository.findByEmail(e)
+                .map(UserPrincipal::new)
+                .orElse(null));
+        if (principal == null) {
+            throw new UsernameNotFoundException("User not found: " + email);
+        }
+        return principal;
     }
-}
\ No newline at end of file
+
+    // Called by DaoAuthenticationProvider after a successful login whose hash
+    // was made at a different BCrypt cost; the save evicts the cached principal
+    @Override
+    public UserPrincipal updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        log.info("Rehashed password for {} at the configured BCrypt cost", user.getEmail());
+        return new UserPrincipal(user);
+    }
+}
@@ -1,26 +1,62 @@
 package com.moveinsync.metrobooking.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Date;
 
+// The key and parser are built once. A token is parsed and its signature
+// checked once; the claims are then cached against the exact token string
+// until the token's own exp, so a client repeating its bearer token skips the
+// HMAC and JSON work. Keying on the whole token (not just a digest of part of
+// it) means a cache hit can only ever be the token that was verified.
 @Service
 @Slf4j
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final SecretKey key;
+    private final JwtParser parser;
+    private final long expiration;
+    private final Cache<String, Claims> verified;
+    private final Counter expiredTokens;
+    private final Counter invalidTokens;
 
-    @Value("${jwt.expiration}")
-    private long expiration;
+    public JwtService(@Value("${jwt.secret}") String secret,
+                      @Value("${jwt.expiration}") long expiration,
+                      @Value("${jwt.cache.max-size:10000}") long cacheSize,
+                      MeterRegistry meterRegistry) {
+        this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.expiration = expiration;
+        if (cacheSize > 0) {
+            this.verified = Caffeine.newBuilder()
+                    .maximumSize(cacheSize)
+                    .expireAfter(Expiry.creating((String token, Claims claims) -> Duration.ofMillis(
+                            Math.max(0, claims.getExpiration().getTime() - System.currentTimeMillis()))))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, verified, "jwtClaims");
+        } else {
+            this.verified = null;
+        }
+        this.expiredTokens = Counter.builder("metro.jwt.rejected").tag("reason", "expired")
+                .description("Bearer tokens refused").register(meterRegistry);
+        this.invalidTokens = Counter.builder("metro.jwt.rejected").tag("reason", "invalid")
+                .description("Bearer tokens refused").register(meterRegistry);
+    }
 
     public String generateToken(String email) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
         return Jwts.builder()
                 .subject(email)
                 .issuedAt(new Date())
@@ -29,26 +65,25 @@ public class JwtService {
                 .compact();
     }
 
-    public String extractEmail(String token) {
-        return parseClaims(token).getSubject();
-    }
-
-    public boolean isTokenValid(String token) {
+    // Claims of a valid token, or null if it is expired, tampered with or malformed
+    public Claims verify(String token) {
+        if (verified != null) {
+            Claims claims = verified.getIfPresent(token);
+            if (claims != null) return claims;
+        }
         try {
-            parseClaims(token);
-            return true;
-        } catch (Exception e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-            return false;
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            if (verified != null && claims.getExpiration() != null) verified.put(token, claims);
+            return claims;
+        } catch (ExpiredJwtException e) {
+            // Routine for a client holding yesterday's token
+            expiredTokens.increment();
+            log.debug("Expired JWT for {}", e.getClaims().getSubject());
+            return null;
+        } catch (JwtException | IllegalArgumentException e) {
+            invalidTokens.increment();
+            log.debug("Invalid JWT token: {}", e.getMessage());
+            return null;
         }
     }
-
-    private Claims parseClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(secret.getBytes());
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-    }
-}
\ No newline at end of file
+}
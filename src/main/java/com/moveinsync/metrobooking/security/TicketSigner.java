@@ -0,0 +1,93 @@
+package com.moveinsync.metrobooking.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Signs and checks the QR payload printed on a ticket:
+//
+//   <booking reference>.<source stop id>.<destination stop id>.<user id>.<valid until, epoch seconds>.<tag>
+//
+// The tag is HMAC-SHA256 over everything before it, cut to 128 bits, so a gate
+// can tell a genuine unexpired ticket from a forged or altered one without
+// looking anything up. Mac instances are not thread-safe and costly to set
+// up, so keyed instances are pooled and borrowed per tag. (A ThreadLocal would
+// build a fresh one for every request under virtual threads.)
+@Component
+public class TicketSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int TAG_BYTES = 16;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Queue<Mac> idleMacs = new ConcurrentLinkedQueue<>();
+
+    public TicketSigner(@Value("${metro.ticket.secret}") String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        idleMacs.add(newMac()); // fail at startup rather than on the first booking
+    }
+
+    public String sign(String reference, long sourceStopId, long destinationStopId, long userId, long validUntil) {
+        String payload = reference + "." + sourceStopId + "." + destinationStopId + "." + userId + "." + validUntil;
+        return payload + "." + ENCODER.encodeToString(tag(payload));
+    }
+
+    // The ticket's fields when the tag matches, otherwise null. Expiry is left
+    // to the caller so it can report it separately.
+    public Ticket verify(String qr) {
+        if (qr == null) return null;
+        int tagStart = qr.lastIndexOf('.');
+        if (tagStart < 0) return null;
+        String payload = qr.substring(0, tagStart);
+        byte[] presented;
+        try {
+            presented = DECODER.decode(qr.substring(tagStart + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(presented, tag(payload))) return null;
+
+        String[] fields = payload.split("\\.");
+        if (fields.length != 5) return null;
+        try {
+            return new Ticket(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                    Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] tag(String payload) {
+        Mac mac = idleMacs.poll();
+        if (mac == null) mac = newMac();
+        try {
+            return Arrays.copyOf(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)), TAG_BYTES);
+        } finally {
+            idleMacs.offer(mac);
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    public record Ticket(String reference, long sourceStopId, long destinationStopId, long userId, long validUntil) {
+    }
+}
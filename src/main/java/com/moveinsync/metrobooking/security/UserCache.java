@@ -0,0 +1,52 @@
+package com.moveinsync.metrobooking.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+// Resolved principals by email, so an authenticated request costs no user
+// query once the cache is warm. Entries expire after a TTL, which bounds how
+// long a change made by another instance can go unseen; changes made here are
+// evicted straight away by UserChangeListener.
+@Component
+@Slf4j
+public class UserCache {
+
+    private final Cache<String, UserPrincipal> cache;
+
+    public UserCache(@Value("${metro.user-cache.max-size:10000}") long maxSize,
+                     @Value("${metro.user-cache.ttl-seconds:300}") long ttlSeconds,
+                     MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+        Gauge.builder("metro.user.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Share of principal lookups served without a user query")
+                .register(meterRegistry);
+    }
+
+    // Unknown emails are not cached; the loader returns null for them
+    public UserPrincipal get(String email, Function<String, UserPrincipal> loader) {
+        return cache.get(email, loader);
+    }
+
+    public void invalidate(String email) {
+        log.debug("Evicting cached principal for {}", email);
+        cache.invalidate(email);
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
@@ -0,0 +1,24 @@
+package com.moveinsync.metrobooking.security;
+
+import com.moveinsync.metrobooking.model.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+// JPA listener on User: any insert, update or delete evicts the cached
+// principal. Hibernate obtains it from the Spring context, hence @Component.
+@Component
+@RequiredArgsConstructor
+public class UserChangeListener {
+
+    private final UserCache userCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void userChanged(User user) {
+        userCache.invalidate(user.getEmail());
+    }
+}
@@ -5,10 +5,12 @@ import com.moveinsync.metrobooking.dto.AuthResponse;
 import com.moveinsync.metrobooking.model.User;
 import com.moveinsync.metrobooking.repository.UserRepository;
 import com.moveinsync.metrobooking.security.JwtService;
+import com.moveinsync.metrobooking.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -50,16 +52,15 @@ public class AuthService {
     }
 
     public AuthResponse login(AuthRequest request) {
-        // Authenticate user
-        authenticationManager.authenticate(
+        // Authenticate user; BCrypt runs on BoundedPasswordEncoder's pool
+        Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
                         request.getEmail(),
                         request.getPassword()
                 )
         );
 
-        User user = userRepository.findByEmail(request.getEmail())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        User user = ((UserPrincipal) authentication.getPrincipal()).getUser();
 
         String token = jwtService.generateToken(user.getEmail());
         log.info("User logged in: {}", request.getEmail());
@@ -0,0 +1,164 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.repository.BookingPartitionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Keeps bookings range-partitioned by month of created_at (PostgreSQL only,
+// so opt-in with metro.booking.partitioning.enabled). On startup and then
+// daily it converts a plain bookings table once, creates the coming months'
+// partitions ahead of time, and, when metro.booking.archive.after-months is
+// set, moves partitions older than that to gzipped NDJSON files, one JSON
+// object per booking row, and detaches and drops them. A partition is only
+// dropped once its file is complete, synced and holds every row. Instances
+// take turns through an advisory lock; one that does not get it skips the run.
+@Component
+@ConditionalOnProperty(name = "metro.booking.partitioning.enabled", havingValue = "true")
+@EnableScheduling
+@Slf4j
+@RequiredArgsConstructor
+public class BookingPartitionManager {
+
+    private final BookingPartitionRepository partitionRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${metro.booking.partitioning.months-ahead:3}")
+    private int monthsAhead = 3;
+
+    // 0 keeps every partition
+    @Value("${metro.booking.archive.after-months:0}")
+    private int archiveAfterMonths;
+
+    @Value("${metro.booking.archive.dir:archive/bookings}")
+    private Path archiveDir = Path.of("archive/bookings");
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintain(YearMonth.now());
+    }
+
+    @Scheduled(cron = "${metro.booking.partitioning.cron:0 15 3 * * *}")
+    public void scheduled() {
+        maintain(YearMonth.now());
+    }
+
+    // createdAt is local time, so months are taken in the JVM's zone too
+    void maintain(YearMonth now) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Boolean locked = transaction.execute(status -> {
+            if (!partitionRepository.tryLock()) return false;
+            if (!partitionRepository.isPartitioned()) convert(now);
+            createAhead(now);
+            return true;
+        });
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("Booking partitions are being maintained by another instance");
+            return;
+        }
+        if (archiveAfterMonths > 0) {
+            archiveBefore(now.minusMonths(archiveAfterMonths));
+        }
+    }
+
+    private void convert(YearMonth now) {
+        long start = System.nanoTime();
+        YearMonth[] range = partitionRepository.createdAtRange();
+        YearMonth first = range == null ? now : range[0];
+        partitionRepository.partition(first, now.plusMonths(monthsAhead));
+        log.info("Partitioned bookings by month from {} in {} ms", first, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void createAhead(YearMonth now) {
+        List<String> existing = partitionRepository.partitions();
+        for (YearMonth month = now; !month.isAfter(now.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            if (!existing.contains(BookingPartitionRepository.partitionName(month))) {
+                partitionRepository.createPartition(month);
+                log.info("Created booking partition {}", BookingPartitionRepository.partitionName(month));
+            }
+        }
+    }
+
+    // Months strictly before the cutoff, oldest first, each in its own transaction
+    private void archiveBefore(YearMonth cutoff) {
+        for (String partition : partitionRepository.partitions()) {
+            YearMonth month = BookingPartitionRepository.monthOf(partition);
+            if (month == null || !month.isBefore(cutoff)) continue;
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.executeWithoutResult(status -> {
+                if (partitionRepository.tryLock()) archive(partition);
+            });
+        }
+    }
+
+    void archive(String partition) {
+        long start = System.nanoTime();
+        Path target = archiveDir.resolve(partition + ".ndjson.gz");
+        Path partial = archiveDir.resolve(partition + ".ndjson.gz.partial");
+        long written;
+        try {
+            Files.createDirectories(archiveDir);
+            try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(partial)), StandardCharsets.UTF_8))) {
+                written = partitionRepository.exportRows(partition, row -> {
+                    try {
+                        out.write(row);
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Could not archive booking partition {}; it stays in the database", partition, e);
+            return;
+        }
+
+        // Rows inserted with a created_at that old since the export would be lost
+        long rows = partitionRepository.countRows(partition);
+        if (rows != written) {
+            log.warn("Booking partition {} changed while archiving ({} rows written, {} now); kept",
+                    partition, written, rows);
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // overwritten by the next attempt
+            }
+            return;
+        }
+        try {
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Could not archive booking partition {}; it stays in the database", partition, e);
+            return;
+        }
+        partitionRepository.detachAndDrop(partition);
+        log.info("Archived {} bookings of {} to {} in {} ms", written, partition, target,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,148 @@
+package com.moveinsync.metrobooking.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Booking references that are unique without asking the database. Each one is
+// a 63-bit id made of
+//
+//   milliseconds since 2024-01-01 UTC (41 bits) | node id (10 bits) | sequence (12 bits)
+//
+// handed out lock-free from one AtomicLong, so ids of a node only ever grow;
+// nodes configured with different metro.booking.reference.node-id values can
+// never produce the same id. When a node issues more than 4096 in one
+// millisecond, or its clock steps back, the sequence carries into the time
+// part and the node simply runs a little ahead of the wall clock.
+//
+// Printed as MIS-<UTC date>-<10 Crockford base32 chars><check symbol>, e.g.
+// MIS-20261018-26FS500C008: the body is the millisecond of that day, node and
+// sequence; the check symbol is the body modulo 37 (Crockford's check alphabet)
+// and catches a mistyped or swapped character.
+@Component
+public class BookingReferenceGenerator {
+
+    static final long EPOCH_MILLIS = 1_704_067_200_000L; // 2024-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int TIME_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int BODY_CHARS = 10; // 27 bits of ms-of-day + 22 bits node and sequence
+    private static final String PREFIX = "MIS-";
+    private static final char[] SYMBOLS = "0123456789ABCDEFGHJKMNPQRSTVWXYZ*~$=U".toCharArray();
+    private static final DateTimeFormatter DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final long node;
+    private final LongSupplier clock;
+
+    // Last issued (time << SEQUENCE_BITS | sequence)
+    private final AtomicLong last = new AtomicLong();
+
+    @Autowired
+    public BookingReferenceGenerator(@Value("${metro.booking.reference.node-id:0}") int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    BookingReferenceGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Booking reference node id must be between 0 and "
+                    + MAX_NODE_ID + ", was " + nodeId);
+        }
+        this.node = nodeId;
+        this.clock = clock;
+    }
+
+    public String next() {
+        return format(nextId());
+    }
+
+    long nextId() {
+        long now = clock.getAsLong() - EPOCH_MILLIS;
+        long next = last.updateAndGet(previous ->
+                Math.max(previous + 1, now << SEQUENCE_BITS));
+        return (next >>> SEQUENCE_BITS) << TIME_SHIFT | node << SEQUENCE_BITS | (next & ((1 << SEQUENCE_BITS) - 1));
+    }
+
+    static String format(long id) {
+        long millis = (id >>> TIME_SHIFT) + EPOCH_MILLIS;
+        long day = Math.floorDiv(millis, MILLIS_PER_DAY);
+        long body = Math.floorMod(millis, MILLIS_PER_DAY) << TIME_SHIFT | (id & ((1L << TIME_SHIFT) - 1));
+
+        char[] chars = new char[BODY_CHARS + 1];
+        long rest = body;
+        for (int i = BODY_CHARS - 1; i >= 0; i--) {
+            chars[i] = SYMBOLS[(int) (rest & 31)];
+            rest >>>= 5;
+        }
+        chars[BODY_CHARS] = SYMBOLS[(int) (body % 37)];
+        return PREFIX + LocalDate.ofEpochDay(day).format(DATE) + "-" + new String(chars);
+    }
+
+    // The id a well-formed reference was printed from, or -1
+    public static long idOf(String reference) {
+        if (!isWellFormed(reference)) return -1;
+        int bodyStart = PREFIX.length() + 9;
+        LocalDate date;
+        try {
+            date = LocalDate.parse(reference.substring(PREFIX.length(), bodyStart - 1), DATE);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+        long body = 0;
+        for (int i = bodyStart; i < bodyStart + BODY_CHARS; i++) {
+            body = body << 5 | symbolValue(reference.charAt(i));
+        }
+        long millis = date.toEpochDay() * MILLIS_PER_DAY + (body >>> TIME_SHIFT);
+        if (millis < EPOCH_MILLIS) return -1;
+        return (millis - EPOCH_MILLIS) << TIME_SHIFT | (body & ((1L << TIME_SHIFT) - 1));
+    }
+
+    // The date printed in a reference, UTC for generated ones, or null. Also
+    // read from references issued before the generator (MIS-<date>-<6 chars>).
+    public static LocalDate dateOf(String reference) {
+        int dateEnd = PREFIX.length() + 8;
+        if (reference == null || reference.length() <= dateEnd || !reference.startsWith(PREFIX)
+                || reference.charAt(dateEnd) != '-') {
+            return null;
+        }
+        try {
+            return LocalDate.parse(reference.substring(PREFIX.length(), dateEnd), DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Shape and check symbol only; says nothing about whether it was ever issued
+    public static boolean isWellFormed(String reference) {
+        int bodyStart = PREFIX.length() + 9;
+        if (reference == null || reference.length() != bodyStart + BODY_CHARS + 1
+                || !reference.startsWith(PREFIX) || reference.charAt(bodyStart - 1) != '-') {
+            return false;
+        }
+        for (int i = PREFIX.length(); i < bodyStart - 1; i++) {
+            if (reference.charAt(i) < '0' || reference.charAt(i) > '9') return false;
+        }
+        long body = 0;
+        for (int i = bodyStart; i < bodyStart + BODY_CHARS; i++) {
+            int value = symbolValue(reference.charAt(i));
+            if (value < 0 || value > 31) return false;
+            body = body << 5 | value;
+        }
+        return symbolValue(reference.charAt(bodyStart + BODY_CHARS)) == body % 37;
+    }
+
+    private static int symbolValue(char c) {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            if (SYMBOLS[i] == c) return i;
+        }
+        return -1;
+    }
+}
@@ -1,6 +1,7 @@
 package com.moveinsync.metrobooking.service;
 
 import com.moveinsync.metrobooking.dto.*;
+import com.moveinsync.metrobooking.exception.InvalidCursorException;
 import com.moveinsync.metrobooking.exception.NoPathException;
 import com.moveinsync.metrobooking.exception.StopNotFoundException;
 import com.moveinsync.metrobooking.graph.MetroGraph;
@@ -9,17 +10,23 @@ import com.moveinsync.metrobooking.model.Stop;
 import com.moveinsync.metrobooking.model.User;
 import com.moveinsync.metrobooking.repository.BookingRepository;
 import com.moveinsync.metrobooking.repository.StopRepository;
+import com.moveinsync.metrobooking.security.TicketSigner;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
 
 @Service
 @Slf4j
@@ -30,8 +37,16 @@ public class BookingService {
     private final StopRepository stopRepository;
     private final GraphService graphService;
     private final PathFinderService pathFinderService;
+    private final PathResultCache pathResultCache;
+    private final BookingWriter bookingWriter;
+    private final BookingReferenceGenerator bookingReferenceGenerator;
+    private final TicketSigner ticketSigner;
+    private final RoutePathCodec routePathCodec;
     private final ObjectMapper objectMapper;
 
+    @Value("${metro.ticket.validity-hours:24}")
+    private long ticketValidityHours = 24;
+
     public BookingResponse createBooking(BookingRequest request, User user) {
         log.info("Creating booking for user: {} from stop {} to stop {}",
                 user.getEmail(), request.getSourceStopId(), request.getDestinationStopId());
@@ -50,10 +65,10 @@ public class BookingService {
             throw new NoPathException("Source and destination cannot be the same stop!");
         }
 
-        // Build graph and find path
-        MetroGraph graph = graphService.buildGraph();
-        PathResult pathResult = pathFinderService.findOptimalPath(
-                graph, sourceStop.getId(), destinationStop.getId());
+        // Current graph snapshot and find path
+        MetroGraph graph = graphService.getGraph();
+        PathResult pathResult = pathResultCache.get(graph, sourceStop.getId(), destinationStop.getId(),
+                () -> pathFinderService.findOptimalPath(graph, sourceStop.getId(), destinationStop.getId()));
 
         // No path found
         if (!pathResult.isPathFound()) {
@@ -62,13 +77,14 @@ public class BookingService {
         }
 
         // Generate unique booking reference
-        String bookingReference = generateBookingReference();
+        String bookingReference = bookingReferenceGenerator.next();
 
         // Generate QR string
         String qrString = generateQRString(bookingReference, sourceStop, destinationStop, user);
 
-        // Convert path to JSON string
-        String routePath = convertPathToJson(pathResult.getSegments());
+        // Stop and line ids only; JSON if the path came without them
+        byte[] routePathEncoded = RoutePathCodec.encode(pathResult.getSegments());
+        String routePath = routePathEncoded == null ? convertPathToJson(pathResult.getSegments()) : null;
 
         // Save booking
         Booking booking = Booking.builder()
@@ -77,6 +93,7 @@ public class BookingService {
                 .sourceStop(sourceStop)
                 .destinationStop(destinationStop)
                 .routePath(routePath)
+                .routePathEncoded(routePathEncoded)
                 .totalStops(pathResult.getTotalStops())
                 .totalInterchanges(pathResult.getTotalInterchanges())
                 .estimatedTime(pathResult.getTotalTravelTime())
@@ -84,7 +101,7 @@ public class BookingService {
                 .status(Booking.BookingStatus.CONFIRMED)
                 .build();
 
-        booking = bookingRepository.save(booking);
+        booking = bookingWriter.save(booking);
         log.info("Booking created successfully: {}", bookingReference);
 
         return BookingResponse.builder()
@@ -106,8 +123,56 @@ public class BookingService {
         return bookingRepository.findByUserId(userId);
     }
 
+    public static final int HISTORY_MAX_PAGE = 200;
+
+    // Newest first. Pass the previous page's nextCursor to continue; the
+    // cursor is the (createdAt, id) of the last row already seen.
+    public BookingHistoryPage getBookingHistory(Long userId, String cursor, int limit) {
+        int size = Math.clamp(limit, 1, HISTORY_MAX_PAGE);
+        // One extra row tells whether another page follows
+        List<BookingSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = bookingRepository.findHistory(userId, Limit.of(size + 1));
+        } else {
+            BookingSummary after = decodeCursor(cursor);
+            rows = bookingRepository.findHistoryBefore(userId, after.getCreatedAt(), after.getBookingId(),
+                    Limit.of(size + 1));
+        }
+        if (rows.size() <= size) {
+            return new BookingHistoryPage(rows, null);
+        }
+        List<BookingSummary> page = rows.subList(0, size);
+        return new BookingHistoryPage(page, encodeCursor(page.getLast()));
+    }
+
+    static String encodeCursor(BookingSummary last) {
+        String key = last.getCreatedAt() + "~" + last.getBookingId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Only createdAt and bookingId are set on the result
+    static BookingSummary decodeCursor(String cursor) {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int split = key.indexOf('~');
+            BookingSummary after = new BookingSummary();
+            after.setCreatedAt(LocalDateTime.parse(key.substring(0, split)));
+            after.setBookingId(Long.parseLong(key.substring(split + 1)));
+            return after;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid booking history cursor");
+        }
+    }
+
     public BookingResponse getBookingByReference(String reference) {
-        Booking booking = bookingRepository.findByBookingReference(reference)
+        // The reference carries its issue date (UTC); a day either side covers
+        // createdAt being local time in any zone
+        LocalDate issued = BookingReferenceGenerator.dateOf(reference);
+        Optional<Booking> found = issued == null
+                ? bookingRepository.findByBookingReference(reference)
+                : bookingRepository.findByBookingReferenceCreatedBetween(reference,
+                        issued.minusDays(1).atStartOfDay(), issued.plusDays(2).atStartOfDay());
+        Booking booking = found
                 .orElseThrow(() -> new RuntimeException("Booking not found: " + reference));
 
         return BookingResponse.builder()
@@ -115,6 +180,7 @@ public class BookingService {
                 .bookingReference(booking.getBookingReference())
                 .sourceStop(booking.getSourceStop().getName())
                 .destinationStop(booking.getDestinationStop().getName())
+                .path(routePathCodec.decode(booking))
                 .totalStops(booking.getTotalStops())
                 .totalInterchanges(booking.getTotalInterchanges())
                 .estimatedTime(booking.getEstimatedTime())
@@ -124,29 +190,11 @@ public class BookingService {
                 .build();
     }
 
-    // Generate unique booking reference e.g. MIS-20240221-ABC123
-    private String generateBookingReference() {
-        String uuid = UUID.randomUUID().toString().substring(0, 6).toUpperCase();
-        String date = LocalDateTime.now().toString().substring(0, 10).replace("-", "");
-        return "MIS-" + date + "-" + uuid;
-    }
-
-    // Generate tamper-resistant QR string using SHA-256
+    // HMAC-signed ticket payload a gate can verify without the database
     private String generateQRString(String bookingRef, Stop source,
                                     Stop destination, User user) {
-        try {
-            String raw = bookingRef + "|" + source.getId() + "|"
-                    + destination.getId() + "|" + user.getId()
-                    + "|" + System.currentTimeMillis();
-
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(raw.getBytes(StandardCharsets.UTF_8));
-            String encoded = Base64.getUrlEncoder().encodeToString(hash);
-
-            return bookingRef + "." + encoded.substring(0, 16);
-        } catch (Exception e) {
-            return bookingRef + "." + UUID.randomUUID().toString().substring(0, 16);
-        }
+        long validUntil = Instant.now().plus(Duration.ofHours(ticketValidityHours)).getEpochSecond();
+        return ticketSigner.sign(bookingRef, source.getId(), destination.getId(), user.getId(), validUntil);
     }
 
     private String convertPathToJson(List<PathSegment> segments) {
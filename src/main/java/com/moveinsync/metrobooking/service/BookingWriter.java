@@ -0,0 +1,166 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Persists new bookings. By default each one is saved in its own transaction.
+// With metro.booking.batch.enabled the calling threads instead queue their
+// booking and a single writer thread group-commits whatever has arrived: up to
+// batch.size bookings, or whatever came within batch.max-wait-ms of the first,
+// go into one transaction as JDBC batches. Every caller still returns only
+// after the transaction holding its booking has committed.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BookingWriter {
+
+    private final BookingRepository bookingRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metro.booking.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    // Keep at or below hibernate.jdbc.batch_size so a batch is one statement round trip
+    @Value("${metro.booking.batch.size:50}")
+    private int batchSize = 50;
+
+    @Value("${metro.booking.batch.max-wait-ms:5}")
+    private long maxWaitMs = 5;
+
+    private final BlockingQueue<PendingBooking> queue = new LinkedBlockingQueue<>();
+    private TransactionTemplate transaction;
+    private Thread writerThread;
+    private volatile boolean running;
+    private DistributionSummary batchSizes;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        if (!batchEnabled) return;
+
+        batchSizes = DistributionSummary.builder("metro.booking.batch.size")
+                .description("Bookings committed per group commit")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("metro.booking.batch.flush")
+                .description("Time to insert and commit one batch of bookings")
+                .register(meterRegistry);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "booking-batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Let queued callers finish before the connection pool goes away
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (writerThread == null) return;
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    public Booking save(Booking booking) {
+        if (!batchEnabled) {
+            return bookingRepository.save(booking);
+        }
+        if (!running) {
+            throw new IllegalStateException("Booking writer is shutting down");
+        }
+        PendingBooking pending = new PendingBooking(booking, new CompletableFuture<>());
+        queue.add(pending);
+        // Shut down in between: the writer may already be gone, take it back
+        if (!running && queue.remove(pending)) {
+            throw new IllegalStateException("Booking writer is shutting down");
+        }
+        try {
+            return pending.saved().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingBooking> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Shutdown: write out what was already taken, then drain the rest
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Blocks for the first booking, then gathers more until the batch is full
+    // or the wait window since that first booking has passed
+    private void collect(List<PendingBooking> batch) throws InterruptedException {
+        PendingBooking first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) return;
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) break;
+            PendingBooking next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingBooking> batch) {
+        long start = System.nanoTime();
+        try {
+            List<Booking> saved = transaction.execute(status -> {
+                List<Booking> bookings = new ArrayList<>(batch.size());
+                for (PendingBooking pending : batch) bookings.add(pending.booking());
+                return bookingRepository.saveAll(bookings);
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).saved().complete(saved.get(i));
+            }
+            batchSizes.record(batch.size());
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            // One bad booking must not fail its neighbours: retry them one by one
+            log.warn("Booking batch of {} failed, retrying individually: {}", batch.size(), e.getMessage());
+            for (PendingBooking pending : batch) {
+                try {
+                    pending.booking().setId(null);
+                    pending.saved().complete(transaction.execute(status -> bookingRepository.save(pending.booking())));
+                } catch (RuntimeException single) {
+                    pending.saved().completeExceptionally(single);
+                }
+            }
+        }
+    }
+
+    private record PendingBooking(Booking booking, CompletableFuture<Booking> saved) {
+    }
+}
@@ -1,73 +1,440 @@
 package com.moveinsync.metrobooking.service;
 
-import com.moveinsync.metrobooking.graph.GraphEdge;
-import com.moveinsync.metrobooking.graph.GraphNode;
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.graph.ContractionHierarchy;
+import com.moveinsync.metrobooking.graph.GraphSnapshotFile;
 import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.graph.RouteTable;
 import com.moveinsync.metrobooking.model.Route;
 import com.moveinsync.metrobooking.model.Stop;
-import com.moveinsync.metrobooking.repository.RouteRepository;
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository;
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository.LoadedNetwork;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 
+// Holds the current immutable MetroGraph snapshot. Readers get whatever
+// snapshot is current without locking; edits only schedule a rebuild, which
+// runs on a single background thread and is swapped in atomically once the
+// graph and its indexes are complete.
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class GraphService {
+public class GraphService implements InfoContributor {
 
-    private final RouteRepository routeRepository;
+    // default 2 mins per stop
+    static final float DEFAULT_HOP_TIME = 2.0f;
 
-    // Cache the graph so we don't rebuild it every time
-    @Cacheable("metroGraph")
-    public MetroGraph buildGraph() {
+    private final NetworkTopologyRepository networkTopologyRepository;
+    private final StopRepository stopRepository;
+    private final PathFinderService pathFinderService;
+    private final MeterRegistry meterRegistry;
+    private final PlatformTransactionManager transactionManager;
+
+    // Precompute every (source, destination) answer when the network is small enough
+    @Value("${metro.graph.route-table.enabled:false}")
+    private boolean routeTableEnabled;
+
+    @Value("${metro.graph.route-table.max-stops:1000}")
+    private int routeTableMaxStops;
+
+    // Contraction hierarchy for networks too large for the route table
+    @Value("${metro.graph.contraction.enabled:false}")
+    private boolean contractionEnabled;
+
+    @Value("${metro.graph.preprocessing.parallelism:0}")
+    private int preprocessingParallelism;
+
+    // Binary snapshot of the served graph for fast restarts; empty disables it
+    @Value("${metro.graph.snapshot.path:}")
+    private String snapshotPath = "";
+
+    // Edits arriving within this window share one rebuild
+    @Value("${metro.graph.rebuild.debounce-ms:500}")
+    private long rebuildDebounceMs;
+
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicReference<MetroGraph> current = new AtomicReference<>();
+    // ReentrantLock rather than synchronized: the first build queries the
+    // database, and a virtual thread blocking inside a monitor pins its carrier
+    private final ReentrantLock initialBuildLock = new ReentrantLock();
+    private final ReentrantLock scheduleLock = new ReentrantLock();
+    private volatile RouteTable lastRouteTable;
+    private volatile Instant lastBuiltAt;
+    private volatile long lastRebuildMillis;
+    private volatile LoadedNetwork lastLoad;
+    private ForkJoinPool preprocessingPool;
+    private ScheduledExecutorService rebuildExecutor;
+    private ScheduledFuture<?> pendingRebuild;
+    private ScheduledFuture<?> pendingIndexes;
+    private TransactionTemplate readOnlyTransaction;
+    private Timer rebuildTimer;
+    private Timer deltaTimer;
+    private Timer loadTimer;
+
+    @PostConstruct
+    void init() {
+        if (routeTableEnabled || contractionEnabled) {
+            preprocessingPool = new ForkJoinPool(preprocessingParallelism > 0
+                    ? preprocessingParallelism : Runtime.getRuntime().availableProcessors());
+        }
+        rebuildExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metro-graph-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        restoreSnapshot();
+
+        rebuildTimer = Timer.builder("metro.graph.rebuild")
+                .description("Time to load, build and preprocess a graph snapshot")
+                .register(meterRegistry);
+        loadTimer = Timer.builder("metro.graph.load")
+                .description("Time to read the network topology from the database")
+                .register(meterRegistry);
+        deltaTimer = Timer.builder("metro.graph.delta")
+                .description("Time to derive a graph snapshot from a single stop or route edit")
+                .register(meterRegistry);
+        Gauge.builder("metro.graph.version", current, c -> c.get() == null ? 0 : c.get().getVersion())
+                .description("Version of the graph snapshot currently served")
+                .register(meterRegistry);
+        Gauge.builder("metro.graph.route.table.memory", this,
+                        s -> s.lastRouteTable == null ? 0 : s.lastRouteTable.memoryBytes())
+                .baseUnit("bytes")
+                .description("Memory held by the precomputed route table")
+                .register(meterRegistry);
+        Gauge.builder("metro.graph.route.table.build.time", this,
+                        s -> s.lastRouteTable == null ? 0 : s.lastRouteTable.getBuildMillis())
+                .baseUnit("milliseconds")
+                .description("Time the last route table took to build")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (rebuildExecutor != null) rebuildExecutor.shutdownNow();
+        if (preprocessingPool != null) preprocessingPool.shutdownNow();
+    }
+
+    // Build the first snapshot off the request path once the app is up, or
+    // verify the one restored from the snapshot file against the database
+    @EventListener(ApplicationReadyEvent.class)
+    void warmUp() {
+        rebuildExecutor.execute(current.get() == null ? this::getGraph : this::rebuildQuietly);
+    }
+
+    // The snapshot currently served. Only the very first call before the
+    // warm-up finishes waits for a build; later calls never block.
+    public MetroGraph getGraph() {
+        MetroGraph graph = current.get();
+        if (graph != null) return graph;
+        initialBuildLock.lock();
+        try {
+            graph = current.get();
+            if (graph == null) {
+                graph = rebuild();
+            }
+            return graph;
+        } finally {
+            initialBuildLock.unlock();
+        }
+    }
+
+    // Call this when routes/stops are updated: the rebuild runs in the
+    // background and readers keep the previous snapshot until it is swapped in
+    public void refreshGraph() {
+        scheduleLock.lock();
+        try {
+            if (pendingRebuild != null) {
+                pendingRebuild.cancel(false);
+            }
+            pendingRebuild = rebuildExecutor.schedule(this::rebuildQuietly, rebuildDebounceMs, TimeUnit.MILLISECONDS);
+        } finally {
+            scheduleLock.unlock();
+        }
+        log.debug("Metro graph rebuild scheduled in {} ms", rebuildDebounceMs);
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot; the next edit retries
+            log.error("Metro graph rebuild failed, still serving v{}",
+                    current.get() == null ? 0 : current.get().getVersion(), e);
+        }
+    }
+
+    private MetroGraph rebuild() {
+        long start = System.nanoTime();
         log.info("Building metro graph from database...");
-        MetroGraph graph = new MetroGraph();
+        long version = versions.incrementAndGet();
+        LoadedNetwork loaded = readOnlyTransaction.execute(status -> networkTopologyRepository.load(DEFAULT_HOP_TIME));
+        lastLoad = loaded;
+        loadTimer.record(loaded.millis(), TimeUnit.MILLISECONDS);
+
+        MetroGraph served;
+        MetroGraph previous = current.get();
+        if (previous != null && previous.getCompact().equals(loaded.graph())) {
+            // Nothing changed (e.g. the snapshot file restored at startup was current):
+            // keep the version, so nothing keyed by it is invalidated
+            log.info("Database matches metro graph v{}, keeping it", previous.getVersion());
+            served = previous;
+            if (needsIndexes(previous)) {
+                current.compareAndSet(previous, preprocess(previous));
+                served = current.get();
+            }
+        } else {
+            MetroGraph graph = new MetroGraph(loaded.graph(), version);
+            log.info("Metro graph v{} built with {} stops, {} edges ({} KB of arrays)",
+                    graph.getVersion(), graph.getTotalStops(), graph.getCompact().edgeCount(),
+                    graph.getCompact().primitiveBytes() / 1024);
+            served = swap(preprocess(graph));
+            persistSnapshot(served);
+        }
+        lastBuiltAt = Instant.now();
+        long elapsed = System.nanoTime() - start;
+        lastRebuildMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        rebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.info("Metro graph v{} is now served (rebuild took {} ms)", served.getVersion(), lastRebuildMillis);
+        return served;
+    }
+
+    private boolean needsIndexes(MetroGraph graph) {
+        return (routeTableEnabled || contractionEnabled)
+                && graph.getRouteTable() == null && graph.getHierarchy() == null;
+    }
+
+    // Serve the last persisted snapshot right away; the warm-up rebuild then
+    // checks it against the database in the background
+    private void restoreSnapshot() {
+        if (snapshotPath.isBlank()) return;
+        Path path = Path.of(snapshotPath);
+        if (!Files.exists(path)) {
+            log.info("No metro graph snapshot at {} yet", path);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            MetroGraph graph = GraphSnapshotFile.read(path);
+            versions.set(graph.getVersion());
+            current.set(graph);
+            log.info("Metro graph v{} restored from {} in {} ms ({} stops)", graph.getVersion(), path,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), graph.getTotalStops());
+        } catch (IOException e) {
+            log.warn("Ignoring metro graph snapshot {}: {}", path, e.getMessage());
+        }
+    }
 
-        List<Route> routes = routeRepository.findAll();
+    private void persistSnapshot(MetroGraph graph) {
+        if (snapshotPath.isBlank()) return;
+        try {
+            long start = System.nanoTime();
+            GraphSnapshotFile.write(Path.of(snapshotPath), graph);
+            log.debug("Metro graph v{} written to {} in {} ms", graph.getVersion(), snapshotPath,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            log.warn("Could not write metro graph snapshot {}", snapshotPath, e);
+        }
+    }
+
+    // A build that started later read newer data, so never swap back to an older version
+    private MetroGraph swap(MetroGraph graph) {
+        return current.accumulateAndGet(graph,
+                (old, built) -> old == null || built.getVersion() > old.getVersion() ? built : old);
+    }
+
+    // Incremental updates: each edit is applied to the current snapshot on the
+    // rebuild thread, so it is ordered with full rebuilds, and swapped in without
+    // reloading the network. Precomputed indexes follow in the background.
+
+    public void applyStopChange(Stop stop) {
+        applyDelta("stop " + stop.getId() + " changed", (base, editor) -> editor.putStop(stop.getId(), stop.getName(),
+                stop.getCode(), Boolean.TRUE.equals(stop.getIsInterchange()), stop.getLatitude(), stop.getLongitude()));
+    }
+
+    public void applyStopRemoval(Long stopId) {
+        applyDelta("stop " + stopId + " removed", (base, editor) -> editor.removeStop(stopId));
+    }
+
+    public void applyRouteChange(Route route) {
+        applyDelta("route " + route.getId() + " changed", (base, editor) -> {
+            List<Stop> stops = route.getStops() == null ? List.of() : route.getStops();
+            long[] stopIds = stops.stream().mapToLong(Stop::getId).toArray();
+
+            // Request bodies often carry bare stop ids: details of stops new to the
+            // network come from the database, the others are already in the graph
+            List<Long> missing = Arrays.stream(stopIds).filter(id -> base.indexOf(id) < 0).boxed().toList();
+            for (Stop stop : stopRepository.findAllById(missing)) {
+                editor.putStop(stop.getId(), stop.getName(), stop.getCode(),
+                        Boolean.TRUE.equals(stop.getIsInterchange()), stop.getLatitude(), stop.getLongitude());
+            }
+            editor.putRoute(route.getId(), route.getName(), route.getColor(), stopIds, DEFAULT_HOP_TIME);
+        });
+    }
+
+    public void applyRouteRemoval(Long routeId) {
+        applyDelta("route " + routeId + " removed", (base, editor) -> editor.removeRoute(routeId));
+    }
+
+    // The edit is given the snapshot it patches, not whatever is current by then
+    private void applyDelta(String change, BiConsumer<CompactGraph, CompactGraph.Editor> edit) {
+        rebuildExecutor.execute(() -> {
+            MetroGraph base = current.get();
+            if (base == null) {
+                // Nothing to patch yet, and a first build already under way may
+                // have read the network before this change: build again
+                log.info("No metro graph to patch ({}), scheduling a full rebuild", change);
+                refreshGraph();
+                return;
+            }
+            try {
+                long start = System.nanoTime();
+                CompactGraph.Editor editor = base.getCompact().edit();
+                edit.accept(base.getCompact(), editor);
+                MetroGraph graph = swap(new MetroGraph(editor.build(), versions.incrementAndGet()));
+                long elapsed = System.nanoTime() - start;
+                deltaTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                log.info("Metro graph v{} derived from v{} ({}) in {} us",
+                        graph.getVersion(), base.getVersion(), change, TimeUnit.NANOSECONDS.toMicros(elapsed));
+                persistSnapshot(graph);
+                scheduleIndexes();
+            } catch (RuntimeException e) {
+                log.warn("Incremental update failed ({}), falling back to a full rebuild", change, e);
+                refreshGraph();
+            }
+        });
+    }
+
+    // Route table / hierarchy for a snapshot produced by a delta, once edits settle
+    private void scheduleIndexes() {
+        if (!routeTableEnabled && !contractionEnabled) return;
+        scheduleLock.lock();
+        try {
+            if (pendingIndexes != null) {
+                pendingIndexes.cancel(false);
+            }
+            pendingIndexes = rebuildExecutor.schedule(() -> {
+                MetroGraph graph = current.get();
+                if (!needsIndexes(graph)) return;
+                try {
+                    // Only install the indexes if no newer snapshot arrived meanwhile
+                    current.compareAndSet(graph, preprocess(graph));
+                } catch (RuntimeException e) {
+                    log.error("Preprocessing graph v{} failed, queries use live search", graph.getVersion(), e);
+                }
+            }, rebuildDebounceMs, TimeUnit.MILLISECONDS);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        MetroGraph graph = current.get();
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("version", graph == null ? 0 : graph.getVersion());
+        details.put("stops", graph == null ? 0 : graph.getTotalStops());
+        details.put("builtAt", lastBuiltAt);
+        details.put("lastRebuildMs", lastRebuildMillis);
+        LoadedNetwork load = lastLoad;
+        if (load != null) {
+            details.put("lastLoadMs", load.millis());
+            details.put("lastLoadRows", Map.of("stops", load.stopRows(), "routes", load.routeRows(),
+                    "routeStops", load.routeStopRows()));
+        }
+        builder.withDetail("metroGraph", details);
+    }
+
+    // Builds an immutable snapshot from already loaded Route entities
+    public static MetroGraph buildGraph(List<Route> routes) {
+        return buildGraph(routes, 0L);
+    }
+
+    public static MetroGraph buildGraph(List<Route> routes, long version) {
+        CompactGraph.Builder builder = CompactGraph.builder();
 
-        // Add all stops as nodes
         for (Route route : routes) {
             List<Stop> stops = route.getStops();
-            for (Stop stop : stops) {
-                if (!graph.containsStop(stop.getId())) {
-                    GraphNode node = new GraphNode(
-                            stop.getId(),
-                            stop.getName(),
-                            stop.getCode(),
-                            stop.getIsInterchange()
-                    );
-                    graph.addNode(node);
-                }
-            }
+            long[] stopIds = new long[stops.size()];
 
-            // Add edges between consecutive stops
-            for (int i = 0; i < stops.size() - 1; i++) {
-                Stop from = stops.get(i);
-                Stop to = stops.get(i + 1);
-
-                GraphEdge edge = new GraphEdge(
-                        from.getId(),
-                        to.getId(),
-                        route.getId(),
-                        route.getName(),
-                        route.getColor(),
-                        2.0 // default 2 mins per stop
-                );
-                graph.addEdge(edge);
+            // Add all stops as nodes
+            for (int i = 0; i < stops.size(); i++) {
+                Stop stop = stops.get(i);
+                builder.addStop(stop.getId(), stop.getName(), stop.getCode(),
+                        Boolean.TRUE.equals(stop.getIsInterchange()), stop.getLatitude(), stop.getLongitude());
+                stopIds[i] = stop.getId();
             }
+
+            // Consecutive stops of the route become edges in both directions
+            builder.addRoute(route.getId(), route.getName(), route.getColor(), stopIds, DEFAULT_HOP_TIME);
         }
 
-        log.info("Metro graph built with {} stops", graph.getTotalStops());
-        return graph;
+        return new MetroGraph(builder.build(), version);
     }
 
-    // Call this when routes/stops are updated
-    @CacheEvict(value = "metroGraph", allEntries = true)
-    public void refreshGraph() {
-        log.info("Metro graph cache cleared - will rebuild on next request");
+    // Route table when the network is small enough, otherwise the contraction
+    // hierarchy if enabled, otherwise queries fall back to live search
+    private MetroGraph preprocess(MetroGraph graph) {
+        CompactGraph compact = graph.getCompact();
+        lastRouteTable = null;
+
+        if (routeTableEnabled) {
+            long estimate = RouteTable.estimateBytes(compact);
+            if (compact.stopCount() > routeTableMaxStops) {
+                log.info("Route table skipped: {} stops exceed the ceiling of {}",
+                        compact.stopCount(), routeTableMaxStops);
+            } else if (!RouteTable.fitsInArrays(compact) || estimate > Runtime.getRuntime().maxMemory() / 2) {
+                // A ceiling set too high must not take the heap with it
+                log.warn("Route table skipped: {} stops would need {} MB, more than half the heap",
+                        compact.stopCount(), estimate / (1024 * 1024));
+            } else {
+                log.debug("Building route table for graph v{} (about {} KB)", graph.getVersion(), estimate / 1024);
+                RouteTable table = RouteTable.build(compact, graph.getVersion(),
+                        pathFinderService.getRouteSearch(), preprocessingPool);
+                lastRouteTable = table;
+                log.info("Route table for graph v{} built in {} ms ({} KB)",
+                        graph.getVersion(), table.getBuildMillis(), table.memoryBytes() / 1024);
+                return graph.withRouteTable(table);
+            }
+        }
+
+        if (contractionEnabled) {
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(compact, graph.getVersion(),
+                    pathFinderService.getRouteSearch().getTransferPenalty(), preprocessingPool);
+            log.info("Contraction hierarchy for graph v{} built in {} ms ({} shortcuts, {} KB)",
+                    graph.getVersion(), hierarchy.getBuildMillis(), hierarchy.getShortcutCount(),
+                    hierarchy.memoryBytes() / 1024);
+            return graph.withHierarchy(hierarchy);
+        }
+        return graph;
     }
-}
\ No newline at end of file
+}
@@ -2,21 +2,52 @@ package com.moveinsync.metrobooking.service;
 
 import com.moveinsync.metrobooking.dto.PathResult;
 import com.moveinsync.metrobooking.dto.PathSegment;
-import com.moveinsync.metrobooking.graph.GraphEdge;
+import com.moveinsync.metrobooking.graph.CompactGraph;
 import com.moveinsync.metrobooking.graph.MetroGraph;
-import lombok.extern.slf4j.Slf4j;
+import com.moveinsync.metrobooking.graph.RouteSearch;
+import com.moveinsync.metrobooking.graph.SearchMode;
+import com.moveinsync.metrobooking.graph.SearchResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 
 @Service
-@Slf4j
 public class PathFinderService {
 
     // Transfer penalty in minutes (discourages unnecessary transfers)
     private static final double TRANSFER_PENALTY = 5.0;
 
+    private final RouteSearch routeSearch = new RouteSearch(TRANSFER_PENALTY);
+
+    // Search states settled per query, one summary per strategy, registered up front
+    private final Map<SearchMode, DistributionSummary> liveExpanded = new EnumMap<>(SearchMode.class);
+    private final DistributionSummary tableExpanded;
+    private final DistributionSummary hierarchyExpanded;
+
+    // Live search used when the graph carries no precomputed index
+    @Value("${metro.pathfinder.mode:DIJKSTRA}")
+    private SearchMode searchMode = SearchMode.DIJKSTRA;
+
+    public PathFinderService(MeterRegistry meterRegistry) {
+        for (SearchMode mode : SearchMode.values()) {
+            liveExpanded.put(mode, expandedSummary(mode.name().toLowerCase(), meterRegistry));
+        }
+        tableExpanded = expandedSummary("table", meterRegistry);
+        hierarchyExpanded = expandedSummary("hierarchy", meterRegistry);
+    }
+
+    public RouteSearch getRouteSearch() {
+        return routeSearch;
+    }
+
     public PathResult findOptimalPath(MetroGraph graph, Long sourceId, Long destinationId) {
+        return findOptimalPath(graph, sourceId, destinationId, searchMode);
+    }
+
+    public PathResult findOptimalPath(MetroGraph graph, Long sourceId, Long destinationId, SearchMode mode) {
 
         // Edge case: source and destination are same
         if (sourceId.equals(destinationId)) {
@@ -37,64 +68,27 @@ public class PathFinderService {
                     .build();
         }
 
-        // Dijkstra's Algorithm
-        // cost map: stopId -> minimum cost to reach this stop
-        Map<Long, Double> cost = new HashMap<>();
-        // previous map: stopId -> edge used to reach this stop
-        Map<Long, GraphEdge> previous = new HashMap<>();
-        // visited set
-        Set<Long> visited = new HashSet<>();
-
-        // Priority queue: [cost, stopId]
-        PriorityQueue<long[]> pq = new PriorityQueue<>(
-                Comparator.comparingDouble(a -> a[1])
-        );
-
-        // Initialize all costs to infinity
-        for (Long stopId : graph.getNodes().keySet()) {
-            cost.put(stopId, Double.MAX_VALUE);
-        }
-
-        // Start from source with cost 0
-        cost.put(sourceId, 0.0);
-        pq.offer(new long[]{sourceId, 0});
-
-        while (!pq.isEmpty()) {
-            long[] current = pq.poll();
-            Long currentStopId = current[0];
-
-            if (visited.contains(currentStopId)) continue;
-            visited.add(currentStopId);
-
-            // Reached destination!
-            if (currentStopId.equals(destinationId)) break;
-
-            // Check all neighbors
-            for (GraphEdge edge : graph.getNeighbors(currentStopId)) {
-                Long neighborId = edge.getToStopId();
-                if (visited.contains(neighborId)) continue;
-
-                // Calculate transfer penalty if changing lines
-                double penalty = 0.0;
-                if (previous.containsKey(currentStopId)) {
-                    GraphEdge prevEdge = previous.get(currentStopId);
-                    if (!prevEdge.getRouteId().equals(edge.getRouteId())) {
-                        penalty = TRANSFER_PENALTY;
-                    }
-                }
-
-                double newCost = cost.get(currentStopId) + edge.getTravelTime() + penalty;
-
-                if (newCost < cost.get(neighborId)) {
-                    cost.put(neighborId, newCost);
-                    previous.put(neighborId, edge);
-                    pq.offer(new long[]{neighborId, (long) newCost});
-                }
-            }
+        CompactGraph compact = graph.getCompact();
+        int source = compact.indexOf(sourceId);
+        int destination = compact.indexOf(destinationId);
+
+        // Precomputed indexes of this graph version win over a live search
+        SearchResult result;
+        DistributionSummary expanded;
+        if (graph.getRouteTable() != null) {
+            result = graph.getRouteTable().lookup(source, destination);
+            expanded = tableExpanded;
+        } else if (graph.getHierarchy() != null) {
+            result = graph.getHierarchy().shortestPath(source, destination);
+            expanded = hierarchyExpanded;
+        } else {
+            result = routeSearch.shortestPath(compact, source, destination, mode);
+            expanded = liveExpanded.get(mode);
         }
+        expanded.record(result.getExpanded());
 
         // No path found
-        if (cost.get(destinationId) == Double.MAX_VALUE) {
+        if (!result.isFound()) {
             return PathResult.builder()
                     .pathFound(false)
                     .segments(new ArrayList<>())
@@ -102,52 +96,59 @@ public class PathFinderService {
         }
 
         // Reconstruct path
-        return reconstructPath(graph, previous, sourceId, destinationId, cost.get(destinationId));
+        PathResult path = reconstructPath(compact, result.getStates(), result.getCost());
+        path.setExpandedNodes(result.getExpanded());
+        return path;
     }
 
-    private PathResult reconstructPath(MetroGraph graph, Map<Long, GraphEdge> previous,
-                                       Long sourceId, Long destinationId, double totalCost) {
-        List<PathSegment> segments = new ArrayList<>();
-        int interchanges = 0;
-        String previousRouteId = null;
-
-        // Walk backwards from destination to source
-        LinkedList<GraphEdge> path = new LinkedList<>();
-        Long current = destinationId;
+    private static DistributionSummary expandedSummary(String strategy, MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("metro.path.search.expanded")
+                .description("States settled per path query")
+                .tag("strategy", strategy)
+                .register(meterRegistry);
+    }
 
-        while (previous.containsKey(current)) {
-            path.addFirst(previous.get(current));
-            current = previous.get(current).getFromStopId();
-        }
+    // Turns a chain of (stop, line) states into the segments shown to the user.
+    // The first state is the source; every later state carries the line it was reached on.
+    PathResult reconstructPath(CompactGraph compact, int[] states, double totalCost) {
+        List<PathSegment> segments = new ArrayList<>(states.length);
+        int interchanges = 0;
+        int previousRoute = -1;
 
         // Add source stop
+        int firstRoute = states.length > 1 ? compact.stateRoute(states[1]) : -1;
         segments.add(PathSegment.builder()
-                .stopName(graph.getNodes().get(sourceId).getStopName())
-                .stopCode(graph.getNodes().get(sourceId).getStopCode())
-                .routeName(path.isEmpty() ? "" : path.getFirst().getRouteName())
-                .routeColor(path.isEmpty() ? "" : path.getFirst().getRouteColor())
+                .stopName(compact.stopName(compact.stateStop(states[0])))
+                .stopCode(compact.stopCode(compact.stateStop(states[0])))
+                .routeName(firstRoute < 0 ? "" : compact.routeName(firstRoute))
+                .routeColor(firstRoute < 0 ? "" : compact.routeColor(firstRoute))
                 .isInterchange(false)
+                .stopId(compact.stopId(compact.stateStop(states[0])))
+                .routeId(firstRoute < 0 ? null : compact.routeId(firstRoute))
                 .build());
 
         // Add intermediate and destination stops
-        for (GraphEdge edge : path) {
-            Long stopId = edge.getToStopId();
+        for (int i = 1; i < states.length; i++) {
+            int stop = compact.stateStop(states[i]);
+            int route = compact.stateRoute(states[i]);
             boolean isInterchange = false;
 
-            if (previousRouteId != null && !previousRouteId.equals(String.valueOf(edge.getRouteId()))) {
+            if (previousRoute >= 0 && previousRoute != route) {
                 isInterchange = true;
                 interchanges++;
             }
 
             segments.add(PathSegment.builder()
-                    .stopName(graph.getNodes().get(stopId).getStopName())
-                    .stopCode(graph.getNodes().get(stopId).getStopCode())
-                    .routeName(edge.getRouteName())
-                    .routeColor(edge.getRouteColor())
+                    .stopName(compact.stopName(stop))
+                    .stopCode(compact.stopCode(stop))
+                    .routeName(compact.routeName(route))
+                    .routeColor(compact.routeColor(route))
                     .isInterchange(isInterchange)
+                    .stopId(compact.stopId(stop))
+                    .routeId(compact.routeId(route))
                     .build());
 
-            previousRouteId = String.valueOf(edge.getRouteId());
+            previousRoute = route;
         }
 
         return PathResult.builder()
@@ -158,4 +159,4 @@ public class PathFinderService {
                 .totalTravelTime(totalCost)
                 .build();
     }
-}
\ No newline at end of file
+}
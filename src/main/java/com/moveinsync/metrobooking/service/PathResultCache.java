@@ -0,0 +1,48 @@
+package com.moveinsync.metrobooking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.moveinsync.metrobooking.dto.PathResult;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+// Bounded cache of path results for popular trips. Keys carry the graph
+// version, so a new snapshot simply stops hitting the old entries and they age
+// out through size eviction; nothing is ever cleared wholesale. Concurrent
+// misses for the same trip wait for a single computation.
+// Cached results are shared between callers and must be treated as read-only.
+@Component
+@Slf4j
+public class PathResultCache {
+
+    private final Cache<TripKey, PathResult> cache;
+
+    public PathResultCache(@Value("${metro.path-cache.max-size:10000}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pathResults");
+    }
+
+    public PathResult get(MetroGraph graph, Long sourceId, Long destinationId, Supplier<PathResult> search) {
+        TripKey key = new TripKey(sourceId, destinationId, graph.getVersion());
+        return cache.get(key, k -> {
+            log.debug("Path cache miss for {} -> {} on graph v{}", sourceId, destinationId, k.graphVersion());
+            return search.get();
+        });
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private record TripKey(long sourceId, long destinationId, long graphVersion) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+// Stops and routes live in Hibernate's second-level cache (regions below,
+// sized in hibernate-jcache.conf), and the findAll lists in its query cache.
+// Hibernate keeps entries right for writes made through JPA; the controllers
+// also call in here after every write, because a stop list cached for a
+// route is not touched when one of its stops changes, and a change to the
+// stop or route tables should reach the listings straight away.
+// metro.reference.cache.hit.ratio{region} shows how often the booking path
+// and the listings are answered without a query; Hibernate's own statistics
+// are published as hibernate.* metrics.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReferenceDataCache {
+
+    public static final String STOPS = "metro-stops";
+    public static final String ROUTES = "metro-routes";
+    public static final String ROUTE_STOPS = "metro-route-stops";
+    public static final String QUERIES = "metro-reference-queries";
+
+    private static final String ROUTE_STOPS_ROLE = Route.class.getName() + ".stops";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+
+    @PostConstruct
+    void init() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String region : new String[]{STOPS, ROUTES, ROUTE_STOPS}) {
+            register(region, statistics, s -> s.getDomainDataRegionStatistics(region));
+        }
+        register(QUERIES, statistics, s -> s.getQueryRegionStatistics(QUERIES));
+    }
+
+    public void stopChanged(Long stopId) {
+        log.debug("Evicting cached stop {} and the route stop lists", stopId);
+        Cache cache = cache();
+        cache.evictEntityData(Stop.class, stopId);
+        cache.evictCollectionData(ROUTE_STOPS_ROLE);
+        cache.evictQueryRegion(QUERIES);
+    }
+
+    public void routeChanged(Long routeId) {
+        log.debug("Evicting cached route {}", routeId);
+        Cache cache = cache();
+        cache.evictEntityData(Route.class, routeId);
+        cache.evictCollectionData(ROUTE_STOPS_ROLE, routeId);
+        cache.evictQueryRegion(QUERIES);
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.getCache().unwrap(Cache.class);
+    }
+
+    private void register(String region, Statistics statistics,
+                          Function<Statistics, CacheRegionStatistics> regionStatistics) {
+        Gauge.builder("metro.reference.cache.hit.ratio", statistics, s -> hitRatio(regionStatistics.apply(s)))
+                .description("Share of second-level and query cache lookups for stops and routes that hit")
+                .tag("region", region)
+                .register(meterRegistry);
+    }
+
+    private static double hitRatio(CacheRegionStatistics statistics) {
+        if (statistics == null) return Double.NaN;
+        long lookups = statistics.getHitCount() + statistics.getMissCount();
+        return lookups == 0 ? Double.NaN : (double) statistics.getHitCount() / lookups;
+    }
+}
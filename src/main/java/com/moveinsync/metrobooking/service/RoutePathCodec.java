@@ -0,0 +1,176 @@
+package com.moveinsync.metrobooking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moveinsync.metrobooking.dto.PathSegment;
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.RouteRepository;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+// Stored form of a booking's path: the stop and line ids only, varint packed.
+// Names, codes and colours are looked up again from the current graph when
+// the path is read. Layout:
+//
+//   version (1) | segment count | per segment: zigzag(stop id - previous stop id) << 1 | line changed
+//                                              [line id + 1, when it changed]
+//
+// The first segment carries the line of the second, so a path on one line
+// stores its line id once. A typical 10-stop booking packs into about 20
+// bytes against roughly 1 KB of JSON.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RoutePathCodec {
+
+    static final int VERSION = 1;
+
+    private final GraphService graphService;
+    private final StopRepository stopRepository;
+    private final RouteRepository routeRepository;
+    private final ObjectMapper objectMapper;
+
+    // Null when a segment has no stop id (paths built before ids were carried)
+    public static byte[] encode(List<PathSegment> segments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + segments.size() * 2);
+        out.write(VERSION);
+        writeVarint(out, segments.size());
+        long previousStop = 0;
+        Long previousRoute = null;
+        for (PathSegment segment : segments) {
+            if (segment.getStopId() == null) return null;
+            long stop = segment.getStopId();
+            boolean routeChanged = !Objects.equals(segment.getRouteId(), previousRoute);
+            writeVarint(out, zigzag(stop - previousStop) << 1 | (routeChanged ? 1 : 0));
+            if (routeChanged) {
+                writeVarint(out, segment.getRouteId() == null ? 0 : segment.getRouteId() + 1);
+            }
+            previousStop = stop;
+            previousRoute = segment.getRouteId();
+        }
+        return out.toByteArray();
+    }
+
+    // The booking's path as shown to the user: decoded against the current
+    // graph, or parsed from the JSON of bookings made before the encoding
+    public List<PathSegment> decode(Booking booking) {
+        if (booking.getRoutePathEncoded() != null) {
+            return decode(booking.getRoutePathEncoded());
+        }
+        if (booking.getRoutePath() == null) return List.of();
+        try {
+            return List.of(objectMapper.readValue(booking.getRoutePath(), PathSegment[].class));
+        } catch (Exception e) {
+            log.warn("Unreadable route path on booking {}", booking.getBookingReference());
+            return List.of();
+        }
+    }
+
+    List<PathSegment> decode(byte[] encoded) {
+        long[][] ids = unpack(encoded);
+        long[] stopIds = ids[0];
+        long[] routeIds = ids[1];
+        CompactGraph compact = graphService.getGraph().getCompact();
+
+        // Stops or lines since removed from the network keep the names still
+        // stored against them in the database
+        Set<Long> missingStops = new HashSet<>();
+        Set<Long> missingRoutes = new HashSet<>();
+        for (int i = 0; i < stopIds.length; i++) {
+            if (compact.indexOf(stopIds[i]) < 0) missingStops.add(stopIds[i]);
+            if (routeIds[i] >= 0 && compact.routeIndexOf(routeIds[i]) < 0) missingRoutes.add(routeIds[i]);
+        }
+        Map<Long, Stop> stops = new HashMap<>();
+        if (!missingStops.isEmpty()) {
+            stopRepository.findAllById(missingStops).forEach(stop -> stops.put(stop.getId(), stop));
+        }
+        Map<Long, Route> routes = new HashMap<>();
+        if (!missingRoutes.isEmpty()) {
+            routeRepository.findAllById(missingRoutes).forEach(route -> routes.put(route.getId(), route));
+        }
+
+        List<PathSegment> segments = new ArrayList<>(stopIds.length);
+        for (int i = 0; i < stopIds.length; i++) {
+            PathSegment.PathSegmentBuilder segment = PathSegment.builder()
+                    .stopId(stopIds[i])
+                    .routeId(routeIds[i] < 0 ? null : routeIds[i])
+                    .isInterchange(i >= 2 && routeIds[i] != routeIds[i - 1]);
+
+            int stop = compact.indexOf(stopIds[i]);
+            if (stop >= 0) {
+                segment.stopName(compact.stopName(stop)).stopCode(compact.stopCode(stop));
+            } else {
+                Stop stored = stops.get(stopIds[i]);
+                segment.stopName(stored != null ? stored.getName() : "Stop #" + stopIds[i])
+                        .stopCode(stored != null ? stored.getCode() : "");
+            }
+
+            int route = routeIds[i] < 0 ? -1 : compact.routeIndexOf(routeIds[i]);
+            if (route >= 0) {
+                segment.routeName(compact.routeName(route)).routeColor(compact.routeColor(route));
+            } else if (routeIds[i] < 0) {
+                segment.routeName("").routeColor("");
+            } else {
+                Route stored = routes.get(routeIds[i]);
+                segment.routeName(stored != null ? stored.getName() : "Line #" + routeIds[i])
+                        .routeColor(stored != null ? stored.getColor() : "");
+            }
+            segments.add(segment.build());
+        }
+        return segments;
+    }
+
+    // {stop ids, route ids}; -1 for a segment without a line
+    static long[][] unpack(byte[] encoded) {
+        int[] position = {0};
+        int version = encoded[position[0]++];
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown route path encoding version " + version);
+        }
+        int count = (int) readVarint(encoded, position);
+        long[] stopIds = new long[count];
+        long[] routeIds = new long[count];
+        long stop = 0;
+        long route = -1;
+        for (int i = 0; i < count; i++) {
+            long head = readVarint(encoded, position);
+            stop += unzigzag(head >>> 1);
+            if ((head & 1) != 0) route = readVarint(encoded, position) - 1;
+            stopIds[i] = stop;
+            routeIds[i] = route;
+        }
+        return new long[][]{stopIds, routeIds};
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] in, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+}
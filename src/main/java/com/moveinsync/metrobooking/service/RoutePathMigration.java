@@ -0,0 +1,133 @@
+package com.moveinsync.metrobooking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moveinsync.metrobooking.dto.PathSegment;
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.repository.RoutePathRepository;
+import com.moveinsync.metrobooking.repository.RoutePathRepository.EncodedRoutePath;
+import com.moveinsync.metrobooking.repository.RoutePathRepository.JsonRoutePath;
+import com.moveinsync.metrobooking.repository.RoutePathRepository.StorageReport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+// Rewrites the JSON route path of older bookings into the encoded form, a
+// batch at a time in the background, when metro.booking.route-path.migrate
+// is set. Stop codes and line names in the JSON are mapped back to ids
+// through the current graph; a row naming anything the network no longer
+// has keeps its JSON, which RoutePathCodec still reads. Storage taken by
+// either form, as measured when the migration finished, is reported under
+// /actuator/info; the endpoint is public, so it never scans bookings itself.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RoutePathMigration implements InfoContributor {
+
+    private final RoutePathRepository routePathRepository;
+    private final GraphService graphService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${metro.booking.route-path.migrate:false}")
+    private boolean enabled;
+
+    @Value("${metro.booking.route-path.migrate-batch-size:500}")
+    private int batchSize = 500;
+
+    private volatile String state = "idle";
+    private volatile StorageReport report;
+
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!enabled) return;
+        Thread.ofPlatform().daemon().name("route-path-migration").start(() -> {
+            try {
+                migrate();
+            } catch (RuntimeException e) {
+                state = "failed";
+                log.error("Route path migration stopped", e);
+            }
+        });
+    }
+
+    // Rows converted
+    public long migrate() {
+        state = "running";
+        StorageReport before = routePathRepository.storageReport();
+        long start = System.nanoTime();
+        CompactGraph compact = graphService.getGraph().getCompact();
+        Map<String, Long> stopIds = new HashMap<>();
+        for (int stop = 0; stop < compact.stopCount(); stop++) {
+            stopIds.put(compact.stopCode(stop), compact.stopId(stop));
+        }
+        Map<String, Long> routeIds = new HashMap<>();
+        for (int route = 0; route < compact.routeCount(); route++) {
+            routeIds.put(compact.routeName(route), compact.routeId(route));
+        }
+
+        long migrated = 0;
+        long skipped = 0;
+        long afterId = 0;
+        List<JsonRoutePath> batch;
+        do {
+            batch = routePathRepository.findJsonOnly(afterId, batchSize);
+            List<EncodedRoutePath> encoded = new ArrayList<>(batch.size());
+            for (JsonRoutePath row : batch) {
+                byte[] bytes = encode(row.json(), stopIds, routeIds);
+                if (bytes == null) {
+                    skipped++;
+                } else {
+                    encoded.add(new EncodedRoutePath(row.bookingId(), bytes));
+                }
+                afterId = row.bookingId();
+            }
+            migrated += routePathRepository.storeEncoded(encoded);
+        } while (batch.size() == batchSize);
+
+        StorageReport after = routePathRepository.storageReport();
+        report = after;
+        state = "done";
+        log.info("Route path migration encoded {} bookings ({} left as JSON) in {} ms; route path storage {} -> {} bytes",
+                migrated, skipped, (System.nanoTime() - start) / 1_000_000,
+                before.jsonBytes() + before.encodedBytes(), after.jsonBytes() + after.encodedBytes());
+        return migrated;
+    }
+
+    private byte[] encode(String json, Map<String, Long> stopIds, Map<String, Long> routeIds) {
+        PathSegment[] segments;
+        try {
+            segments = objectMapper.readValue(json, PathSegment[].class);
+        } catch (Exception e) {
+            return null;
+        }
+        for (PathSegment segment : segments) {
+            Long stopId = stopIds.get(segment.getStopCode());
+            String routeName = segment.getRouteName();
+            Long routeId = routeName == null || routeName.isEmpty() ? null : routeIds.get(routeName);
+            if (stopId == null || (routeId == null && routeName != null && !routeName.isEmpty())) return null;
+            segment.setStopId(stopId);
+            segment.setRouteId(routeId);
+        }
+        return RoutePathCodec.encode(List.of(segments));
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("migration", state);
+        StorageReport report = this.report;
+        if (report != null) {
+            details.put("jsonRows", report.jsonRows());
+            details.put("jsonBytes", report.jsonBytes());
+            details.put("encodedRows", report.encodedRows());
+            details.put("encodedBytes", report.encodedBytes());
+        }
+        builder.withDetail("routePathStorage", details);
+    }
+}
@@ -0,0 +1,116 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.TicketScan;
+import com.moveinsync.metrobooking.dto.TicketValidationResult;
+import com.moveinsync.metrobooking.dto.TicketValidationResult.Outcome;
+import com.moveinsync.metrobooking.repository.TicketRedemptionRepository;
+import com.moveinsync.metrobooking.security.TicketSigner;
+import com.moveinsync.metrobooking.security.TicketSigner.Ticket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Gate validation. Signature, expiry and entry stop are checked in memory
+// from the QR payload alone, and tickets the TicketStatusIndex already knows
+// as used or cancelled are refused there too. Only the rest reach the
+// database, all in one batch of conditional CONFIRMED -> USED updates. The
+// status of the few that were not admitted is then read back to say why.
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TicketService {
+
+    private final TicketSigner ticketSigner;
+    private final TicketRedemptionRepository ticketRedemptionRepository;
+    private final TicketStatusIndex ticketStatusIndex;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Outcome, Counter> scanCounters = new EnumMap<>(Outcome.class);
+
+    @PostConstruct
+    void init() {
+        for (Outcome outcome : Outcome.values()) {
+            scanCounters.put(outcome, Counter.builder("metro.ticket.scans")
+                    .description("Ticket scans validated at gates")
+                    .tag("outcome", outcome.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    // One result per scan, in the order of the scans
+    public List<TicketValidationResult> validate(List<TicketScan> scans) {
+        long now = Instant.now().getEpochSecond();
+        Outcome[] outcomes = new Outcome[scans.size()];
+        String[] references = new String[scans.size()];
+
+        List<Integer> redeemable = new ArrayList<>();
+        List<String> redeemableReferences = new ArrayList<>();
+        for (int i = 0; i < scans.size(); i++) {
+            TicketScan scan = scans.get(i);
+            Ticket ticket = ticketSigner.verify(scan.getQr());
+            if (ticket == null) {
+                outcomes[i] = Outcome.INVALID;
+                continue;
+            }
+            references[i] = ticket.reference();
+            if (ticket.validUntil() < now) {
+                outcomes[i] = Outcome.EXPIRED;
+            } else if (scan.getStopId() != null && scan.getStopId() != ticket.sourceStopId()) {
+                outcomes[i] = Outcome.WRONG_STOP;
+            } else {
+                Outcome known = ticketStatusIndex.lookup(ticket.reference());
+                if (known != null) {
+                    outcomes[i] = known;
+                } else {
+                    redeemable.add(i);
+                    redeemableReferences.add(ticket.reference());
+                }
+            }
+        }
+
+        boolean[] redeemed = ticketRedemptionRepository.redeem(redeemableReferences);
+        List<String> refused = new ArrayList<>();
+        for (int j = 0; j < redeemed.length; j++) {
+            if (redeemed[j]) {
+                outcomes[redeemable.get(j)] = Outcome.ADMITTED;
+                ticketStatusIndex.markUsed(redeemableReferences.get(j));
+            } else {
+                refused.add(redeemableReferences.get(j));
+            }
+        }
+        if (!refused.isEmpty()) {
+            Map<String, String> statuses = ticketRedemptionRepository.statuses(refused);
+            for (int j = 0; j < redeemed.length; j++) {
+                if (redeemed[j]) continue;
+                String reference = redeemableReferences.get(j);
+                String status = statuses.get(reference);
+                if (status == null) {
+                    outcomes[redeemable.get(j)] = Outcome.NOT_FOUND;
+                } else if (status.equals("CANCELLED")) {
+                    outcomes[redeemable.get(j)] = Outcome.CANCELLED;
+                    ticketStatusIndex.markCancelled(reference);
+                } else {
+                    outcomes[redeemable.get(j)] = Outcome.ALREADY_USED;
+                    ticketStatusIndex.markUsed(reference);
+                }
+            }
+        }
+
+        List<TicketValidationResult> results = new ArrayList<>(scans.size());
+        for (int i = 0; i < scans.size(); i++) {
+            scanCounters.get(outcomes[i]).increment();
+            results.add(new TicketValidationResult(references[i], outcomes[i]));
+        }
+        log.debug("Validated {} ticket scans, {} admitted", scans.size(), redeemable.size() - refused.size());
+        return results;
+    }
+}
@@ -0,0 +1,279 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.TicketValidationResult.Outcome;
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Stream;
+
+// References of tickets that can no longer be used (USED or CANCELLED), so a
+// gate can refuse a replayed QR without a database round trip. Keys are the
+// 63-bit ids behind the references (BookingReferenceGenerator.idOf), held in
+// an open-addressing table of primitive longs with one status byte per slot,
+// fronted by a Bloom filter: most scans are of unused tickets and are turned
+// away by a few bit tests before the table is probed.
+//
+// The index only ever short-circuits a refusal. A reference it does not know,
+// including every one while it is still loading, goes to the database's
+// conditional update as before, and what the database answers is fed back in,
+// so transitions made by other instances are learned on first sight.
+//
+// Reads are optimistic (StampedLock) and retried under the read lock only if
+// a write raced them; writes take the write lock.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TicketStatusIndex {
+
+    private static final byte USED = 1;
+    private static final byte CANCELLED = 2;
+    // From find: the Bloom filter passed the id but the table does not hold it
+    private static final byte BLOOM_FALSE_POSITIVE = -1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final BookingRepository bookingRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] keys = new long[INITIAL_CAPACITY * 2];
+    private byte[] statuses = new byte[INITIAL_CAPACITY * 2];
+    private int size;
+    private BloomFilter bloom = new BloomFilter(INITIAL_CAPACITY, BLOOM_FALSE_POSITIVE_RATE);
+    private volatile boolean ready;
+    private Counter bloomFalsePositives;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("metro.ticket.index.size", this, TicketStatusIndex::size)
+                .description("Used or cancelled tickets held in the in-memory index")
+                .register(meterRegistry);
+        Gauge.builder("metro.ticket.index.memory", this, TicketStatusIndex::memoryBytes)
+                .baseUnit("bytes")
+                .description("Memory held by the used-ticket hash table and Bloom filter")
+                .register(meterRegistry);
+        Gauge.builder("metro.ticket.index.bloom.fpp", this, TicketStatusIndex::expectedFalsePositiveRate)
+                .description("Expected Bloom filter false-positive rate at its current fill")
+                .register(meterRegistry);
+        bloomFalsePositives = Counter.builder("metro.ticket.index.bloom.false.positives")
+                .description("Lookups the Bloom filter passed that the hash table then did not hold")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = bookingRepository.streamReferencesByStatusIn(
+                    List.of(Booking.BookingStatus.USED, Booking.BookingStatus.CANCELLED))) {
+                rows.forEach(row -> put((String) row[0], (Booking.BookingStatus) row[1]));
+            }
+        });
+        ready = true;
+        log.info("Ticket status index loaded {} references in {} ms", size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ALREADY_USED or CANCELLED when the ticket is known to be spent, otherwise null
+    public Outcome lookup(String reference) {
+        if (!ready) return null;
+        long id = BookingReferenceGenerator.idOf(reference);
+        if (id <= 0) return null;
+
+        long stamp = lock.tryOptimisticRead();
+        byte status = find(id);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                status = find(id);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        // Counted only for a consistent view, so a retried or torn read is not counted twice
+        if (status == BLOOM_FALSE_POSITIVE) bloomFalsePositives.increment();
+        return switch (status) {
+            case USED -> Outcome.ALREADY_USED;
+            case CANCELLED -> Outcome.CANCELLED;
+            default -> null;
+        };
+    }
+
+    public void markUsed(String reference) {
+        put(reference, Booking.BookingStatus.USED);
+    }
+
+    public void markCancelled(String reference) {
+        put(reference, Booking.BookingStatus.CANCELLED);
+    }
+
+    private void put(String reference, Booking.BookingStatus bookingStatus) {
+        long id = BookingReferenceGenerator.idOf(reference);
+        if (id <= 0) return; // references from before the generator never pass signature checks
+        byte status = bookingStatus == Booking.BookingStatus.CANCELLED ? CANCELLED : USED;
+
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(keys, id);
+            if (keys[slot] == id) {
+                statuses[slot] = status;
+                return;
+            }
+            keys[slot] = id;
+            statuses[slot] = status;
+            size++;
+            bloom.add(id);
+            if (size * 2 > keys.length) grow();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Runs optimistically: it only reads array slots and must not loop forever on a torn view
+    private byte find(long id) {
+        long[] keys = this.keys;
+        byte[] statuses = this.statuses;
+        if (statuses.length != keys.length) return 0; // caught mid-grow; validation fails
+        if (!bloom.mightContain(id)) return 0;
+        int mask = keys.length - 1;
+        for (int slot = (int) mix(id) & mask, probes = 0; probes < keys.length; slot = (slot + 1) & mask, probes++) {
+            long key = keys[slot];
+            if (key == id) return statuses[slot];
+            if (key == 0) break;
+        }
+        return BLOOM_FALSE_POSITIVE;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        byte[] oldStatuses = statuses;
+        long[] newKeys = new long[oldKeys.length * 2];
+        byte[] newStatuses = new byte[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int slot = slotOf(newKeys, oldKeys[i]);
+            newKeys[slot] = oldKeys[i];
+            newStatuses[slot] = oldStatuses[i];
+        }
+        keys = newKeys;
+        statuses = newStatuses;
+        // Sized for as many keys as the table takes before it grows again
+        bloom = rebuildBloom(newKeys, newKeys.length / 2);
+    }
+
+    private static BloomFilter rebuildBloom(long[] keys, int capacity) {
+        BloomFilter filter = new BloomFilter(capacity, BLOOM_FALSE_POSITIVE_RATE);
+        for (long key : keys) {
+            if (key != 0) filter.add(key);
+        }
+        return filter;
+    }
+
+    private static int slotOf(long[] keys, long id) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(id) & mask;
+        while (keys[slot] != 0 && keys[slot] != id) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // Ids are mostly timestamp bits; scramble them before taking low bits
+    static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    long memoryBytes() {
+        long stamp = lock.readLock();
+        try {
+            return keys.length * (long) (Long.BYTES + 1) + bloom.memoryBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    double expectedFalsePositiveRate() {
+        long stamp = lock.readLock();
+        try {
+            return bloom.expectedFalsePositiveRate();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    // Sized for a capacity and target false-positive rate; k probes derived
+    // from one mixed hash by double hashing
+    static final class BloomFilter {
+
+        private final long[] bits;
+        private final int hashes;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            long bitCount = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) Math.max(1, (bitCount + 63) / 64)];
+            this.hashes = Math.max(1, (int) Math.round((double) bits.length * 64 / capacity * Math.log(2)));
+        }
+
+        void add(long key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            long bitCount = bits.length * 64L;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(long key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            long bitCount = bits.length * 64L;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        long memoryBytes() {
+            return bits.length * (long) Long.BYTES;
+        }
+
+        // (fraction of bits set)^k
+        double expectedFalsePositiveRate() {
+            long set = 0;
+            for (long word : bits) set += Long.bitCount(word);
+            return Math.pow((double) set / (bits.length * 64L), hashes);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+// The network topology (GET /api/network) and the stop list (GET /api/stops)
+// serialised once and kept as plain and gzipped bytes, so a request is a
+// memory copy and a revalidation a string compare. The topology is rebuilt
+// when the graph version changes; the stop list also includes stops on no
+// route, so it is rebuilt when StopController reports a write here, and read
+// again after metro.network.stops.refresh-seconds to pick up writes made on
+// another instance or straight to the database. ETags hash the JSON, so a
+// re-read of unchanged stops keeps its tag, and every instance hands out the
+// same tag for the same content.
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TopologyPayloadCache {
+
+    private final GraphService graphService;
+    private final StopRepository stopRepository;
+    private final JsonMapper jsonMapper;
+
+    private final AtomicLong stopGenerations = new AtomicLong();
+
+    @Value("${metro.network.stops.refresh-seconds:30}")
+    private long stopsRefreshSeconds = 30;
+    private volatile long stopsReadAt;
+
+    // Locks rather than synchronized: the stop list is read from the database
+    // while held, which would pin a virtual thread's carrier
+    private final ReentrantLock networkLock = new ReentrantLock();
+    private final ReentrantLock stopsLock = new ReentrantLock();
+    private volatile Payload network;
+    private volatile Payload stops;
+
+    public record Payload(long key, String tag, byte[] json, byte[] gzip) {
+
+        // Strong ETag of one representation; the gzipped bytes are a different one
+        public String etag(boolean gzipped) {
+            return "\"" + tag + (gzipped ? "-gzip\"" : "\"");
+        }
+    }
+
+    public Payload network() {
+        MetroGraph graph = graphService.getGraph();
+        Payload payload = network;
+        if (payload != null && payload.key() == graph.getVersion()) return payload;
+        networkLock.lock();
+        try {
+            payload = network;
+            // Never replace a newer topology with one built from an older snapshot
+            if (payload != null && payload.key() >= graph.getVersion()) return payload;
+            long start = System.nanoTime();
+            payload = payload(graph.getVersion(), writeNetwork(graph));
+            network = payload;
+            log.info("Serialised network v{} ({} bytes, {} gzipped) in {} ms", graph.getVersion(),
+                    payload.json().length, payload.gzip().length, (System.nanoTime() - start) / 1_000_000);
+            return payload;
+        } finally {
+            networkLock.unlock();
+        }
+    }
+
+    public Payload stops() {
+        // Taken before the read, so a write committing meanwhile forces another build
+        long generation = stopGenerations.get();
+        Payload payload = stops;
+        if (payload != null && payload.key() == generation && fresh(stopsReadAt)) return payload;
+        stopsLock.lock();
+        try {
+            payload = stops;
+            if (payload != null && payload.key() == generation && fresh(stopsReadAt)) return payload;
+            long readAt = System.nanoTime();
+            payload = payload(generation, jsonMapper.writeValueAsBytes(stopRepository.findAll()));
+            stops = payload;
+            stopsReadAt = readAt;
+            return payload;
+        } finally {
+            stopsLock.unlock();
+        }
+    }
+
+    private boolean fresh(long readAt) {
+        return System.nanoTime() - readAt < TimeUnit.SECONDS.toNanos(stopsRefreshSeconds);
+    }
+
+    public void stopsChanged() {
+        stopGenerations.incrementAndGet();
+    }
+
+    // The graph version is left out, so equal networks get equal tags anywhere.
+    // {"stops": [...], "routes": [{..., "stops": [ids in travel order]}],
+    //  "edges": [{"route", "from", "to", "time"}]}: one edge per hop, route by route in travel order
+    private byte[] writeNetwork(MetroGraph graph) {
+        CompactGraph compact = graph.getCompact();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (JsonGenerator json = jsonMapper.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeArrayPropertyStart("stops");
+            for (int s = 0; s < compact.stopCount(); s++) {
+                json.writeStartObject();
+                json.writeNumberProperty("id", compact.stopId(s));
+                json.writeStringProperty("name", compact.stopName(s));
+                json.writeStringProperty("code", compact.stopCode(s));
+                json.writeBooleanProperty("isInterchange", compact.isInterchange(s));
+                writeCoordinate(json, "latitude", compact.latitude(s));
+                writeCoordinate(json, "longitude", compact.longitude(s));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeArrayPropertyStart("routes");
+            for (int r = 0; r < compact.routeCount(); r++) {
+                json.writeStartObject();
+                json.writeNumberProperty("id", compact.routeId(r));
+                json.writeStringProperty("name", compact.routeName(r));
+                json.writeStringProperty("color", compact.routeColor(r));
+                json.writeArrayPropertyStart("stops");
+                for (int p = compact.routeStopStart(r); p < compact.routeStopEnd(r); p++) {
+                    json.writeNumber(compact.stopId(compact.routeStopAt(p)));
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeArrayPropertyStart("edges");
+            for (int r = 0; r < compact.routeCount(); r++) {
+                for (int p = compact.routeStopStart(r) + 1; p < compact.routeStopEnd(r); p++) {
+                    json.writeStartObject();
+                    json.writeNumberProperty("route", compact.routeId(r));
+                    json.writeNumberProperty("from", compact.stopId(compact.routeStopAt(p - 1)));
+                    json.writeNumberProperty("to", compact.stopId(compact.routeStopAt(p)));
+                    json.writeNumberProperty("time", compact.hopTime(p));
+                    json.writeEndObject();
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeCoordinate(JsonGenerator json, String name, Double value) {
+        if (value == null) {
+            json.writeNullProperty(name);
+        } else {
+            json.writeNumberProperty(name, value);
+        }
+    }
+
+    private static Payload payload(long key, byte[] json) {
+        return new Payload(key, hash(json), json, gzip(json));
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // First 128 bits of the SHA-256, URL-safe so it needs no escaping in a header
+    private static String hash(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.moveinsync.metrobooking.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitedDataSourceTest {
+
+    @Test
+    void holdsOnePermitPerOpenConnection() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:permits;DB_CLOSE_DELAY=-1");
+        ConcurrencyLimitedDataSource dataSource = new ConcurrencyLimitedDataSource(h2, 2, 50);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+        assertEquals(0, dataSource.getAvailablePermits());
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        first.close();
+        first.close(); // a second close must not hand out an extra permit
+        assertEquals(1, dataSource.getAvailablePermits());
+        try (Connection third = dataSource.getConnection()) {
+            assertTrue(third.isValid(1));
+            assertTrue(third.isWrapperFor(org.h2.jdbc.JdbcConnection.class));
+        }
+        second.close();
+        assertEquals(2, dataSource.getAvailablePermits());
+    }
+}
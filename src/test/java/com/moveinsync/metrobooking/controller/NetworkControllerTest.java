@@ -0,0 +1,137 @@
+package com.moveinsync.metrobooking.controller;
+
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import com.moveinsync.metrobooking.service.GraphService;
+import com.moveinsync.metrobooking.service.TopologyPayloadCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NetworkControllerTest {
+
+    private final GraphService graphService = mock(GraphService.class);
+    private final StopRepository stopRepository = mock(StopRepository.class);
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final Stop rajivChowk = stop(1L, "Rajiv Chowk", "RC");
+    private final Stop kashmereGate = stop(2L, "Kashmere Gate", "KG");
+    private final Stop dwarka = stop(3L, "Dwarka", "DW");
+    private TopologyPayloadCache payloads;
+    private NetworkController controller;
+
+    @BeforeEach
+    void setUp() {
+        payloads = new TopologyPayloadCache(graphService, stopRepository, jsonMapper);
+        controller = new NetworkController(payloads);
+        when(graphService.getGraph()).thenReturn(GraphService.buildGraph(List.of(
+                Route.builder().id(10L).name("Blue").color("BLUE").stops(List.of(dwarka, rajivChowk, kashmereGate))
+                        .build()), 1));
+    }
+
+    @Test
+    void servesTheNetworkSerialisedOnceAndRevalidatesWithoutABody() throws Exception {
+        ResponseEntity<byte[]> first = controller.getNetwork(headers("gzip, deflate", null));
+
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals("gzip", first.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("no-cache, private", first.getHeaders().getCacheControl());
+        JsonNode network = jsonMapper.readTree(gunzip(first.getBody()));
+        assertEquals(3, network.get("stops").size());
+        assertEquals("[3,1,2]", network.get("routes").get(0).get("stops").toString());
+        assertEquals(2, network.get("edges").size());
+        assertEquals(1, network.get("edges").get(1).get("from").asLong());
+        assertEquals(2, network.get("edges").get(1).get("to").asLong());
+
+        String etag = first.getHeaders().getETag();
+        ResponseEntity<byte[]> revalidated = controller.getNetwork(headers("gzip", etag));
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertNull(revalidated.getBody());
+        assertEquals(etag, revalidated.getHeaders().getETag());
+
+        // Without gzip the plain bytes go out under their own tag
+        ResponseEntity<byte[]> plain = controller.getNetwork(headers(null, etag));
+        assertEquals(HttpStatus.OK, plain.getStatusCode());
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(network, jsonMapper.readTree(plain.getBody()));
+        assertNotEquals(etag, plain.getHeaders().getETag());
+        assertSame(first.getBody(), controller.getNetwork(headers("gzip", null)).getBody());
+
+        // A new graph version is serialised again and the old tag no longer matches
+        when(graphService.getGraph()).thenReturn(GraphService.buildGraph(List.of(
+                Route.builder().id(10L).name("Blue").color("BLUE").stops(List.of(dwarka, rajivChowk)).build()), 2));
+        ResponseEntity<byte[]> changed = controller.getNetwork(headers("gzip", etag));
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertEquals(1, jsonMapper.readTree(gunzip(changed.getBody())).get("edges").size());
+    }
+
+    @Test
+    void stopListIsReadAgainOnlyAfterAStopWrite() {
+        when(stopRepository.findAll()).thenReturn(List.of(rajivChowk, kashmereGate));
+        StopController stops = new StopController(stopRepository, graphService, null, payloads);
+
+        ResponseEntity<byte[]> first = stops.getAllStops(headers(null, null));
+        String etag = first.getHeaders().getETag();
+        assertEquals("no-cache, public", first.getHeaders().getCacheControl());
+        assertEquals(2, jsonMapper.readTree(first.getBody()).size());
+        assertEquals("Rajiv Chowk", jsonMapper.readTree(first.getBody()).get(0).get("name").asString());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(HttpStatus.NOT_MODIFIED, stops.getAllStops(headers(null, "W/" + etag)).getStatusCode());
+        }
+        verify(stopRepository, times(1)).findAll();
+
+        when(stopRepository.findAll()).thenReturn(List.of(rajivChowk, kashmereGate, dwarka));
+        payloads.stopsChanged();
+        ResponseEntity<byte[]> changed = stops.getAllStops(headers(null, etag));
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertEquals(3, jsonMapper.readTree(changed.getBody()).size());
+    }
+
+    // A write on another instance or straight to the database is never reported here
+    @Test
+    void stopListIsReadAgainOnceItsRefreshIntervalPasses() {
+        when(stopRepository.findAll()).thenReturn(List.of(rajivChowk, kashmereGate));
+        StopController stops = new StopController(stopRepository, graphService, null, payloads);
+        String etag = stops.getAllStops(headers(null, null)).getHeaders().getETag();
+
+        ReflectionTestUtils.setField(payloads, "stopsRefreshSeconds", 0L);
+        // Read again, but unchanged stops keep their tag
+        assertEquals(HttpStatus.NOT_MODIFIED, stops.getAllStops(headers(null, etag)).getStatusCode());
+        verify(stopRepository, times(2)).findAll();
+
+        when(stopRepository.findAll()).thenReturn(List.of(rajivChowk, kashmereGate, dwarka));
+        ResponseEntity<byte[]> changed = stops.getAllStops(headers(null, etag));
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertEquals(3, jsonMapper.readTree(changed.getBody()).size());
+    }
+
+    private static HttpHeaders headers(String acceptEncoding, String ifNoneMatch) {
+        HttpHeaders headers = new HttpHeaders();
+        if (acceptEncoding != null) headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        if (ifNoneMatch != null) headers.setIfNoneMatch(ifNoneMatch);
+        return headers;
+    }
+
+    private static byte[] gunzip(byte[] body) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static Stop stop(Long id, String name, String code) {
+        return Stop.builder().id(id).name(name).code(code).isInterchange(false).latitude(28.6).longitude(77.2).build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.moveinsync.metrobooking.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactGraphTest {
+
+    @Test
+    void editsEqualAFullRebuildOfTheSameNetwork() {
+        Random random = new Random(3);
+        Network network = new Network();
+        for (long id = 1; id <= 60; id++) {
+            network.stops.put(id, new Detail("Stop " + id, "S" + id, false, 12.9 + id * 0.001, 77.5));
+        }
+        for (long route = 1; route <= 6; route++) {
+            network.routes.put(route, randomSequence(random, network, 4 + random.nextInt(12)));
+        }
+        CompactGraph graph = network.build();
+
+        for (int step = 0; step < 300; step++) {
+            CompactGraph.Editor editor = graph.edit();
+            switch (random.nextInt(5)) {
+                case 0 -> {
+                    long id = 1 + random.nextInt(network.stops.size() + 10);
+                    Detail detail = new Detail("Renamed " + step, "R" + step, random.nextBoolean(),
+                            12.9 + random.nextDouble() * 0.1, 77.5 + random.nextDouble() * 0.1);
+                    network.stops.put(id, detail);
+                    editor.putStop(id, detail.name, detail.code, detail.interchange, detail.latitude, detail.longitude);
+                }
+                case 1 -> {
+                    long route = 1 + random.nextInt(12);
+                    long[] sequence = randomSequence(random, network, 2 + random.nextInt(10));
+                    // Now and then the route runs through a brand-new stop
+                    if (random.nextBoolean()) {
+                        long id = 1000 + step;
+                        Detail detail = new Detail("New " + step, "N" + step, false, 12.95, 77.55);
+                        network.stops.put(id, detail);
+                        editor.putStop(id, detail.name, detail.code, detail.interchange, detail.latitude, detail.longitude);
+                        sequence[random.nextInt(sequence.length)] = id;
+                    }
+                    // Like GraphService, details of stops the graph does not know yet come along
+                    for (long id : sequence) {
+                        Detail detail = network.stops.get(id);
+                        if (graph.indexOf(id) < 0) {
+                            editor.putStop(id, detail.name, detail.code, detail.interchange, detail.latitude, detail.longitude);
+                        }
+                    }
+                    network.routes.put(route, sequence);
+                    editor.putRoute(route, "Line " + route, "C" + route, sequence, 2.0f);
+                }
+                case 2 -> {
+                    long route = 1 + random.nextInt(12);
+                    network.routes.remove(route);
+                    editor.removeRoute(route);
+                }
+                case 3 -> {
+                    long id = 1 + random.nextInt(network.stops.size());
+                    network.removeStop(id);
+                    editor.removeStop(id);
+                }
+                default -> {
+                    // No-op edit keeps the very same snapshot
+                    assertSame(graph, editor.build());
+                    continue;
+                }
+            }
+            graph = editor.build();
+            assertEquals(network.build(), graph, "after step " + step);
+        }
+    }
+
+    @Test
+    void renamingAStopSharesTheTopology() {
+        CompactGraph graph = CompactGraph.builder()
+                .addStop(1, "A", "A", false)
+                .addStop(2, "B", "B", false)
+                .addRoute(1, "Red", "RED", new long[]{1, 2}, 2.0f)
+                .build();
+
+        CompactGraph renamed = graph.edit().putStop(2, "B2", "B2", true, null, null).build();
+
+        assertEquals("B2", renamed.stopName(1));
+        assertTrue(renamed.isInterchange(1));
+        assertEquals("B", graph.stopName(1));
+        assertEquals(graph.edgeCount(), renamed.edgeCount());
+        assertEquals(graph.edgeTargetState(0), renamed.edgeTargetState(0));
+    }
+
+    private static long[] randomSequence(Random random, Network network, int length) {
+        List<Long> ids = new ArrayList<>(network.stops.keySet());
+        long[] sequence = new long[length];
+        for (int k = 0; k < length; k++) {
+            sequence[k] = ids.get(random.nextInt(ids.size()));
+        }
+        return sequence;
+    }
+
+    private record Detail(String name, String code, boolean interchange, Double latitude, Double longitude) {
+    }
+
+    // What the database would hold; a full rebuild starts from this
+    private static class Network {
+        final Map<Long, Detail> stops = new HashMap<>();
+        final Map<Long, long[]> routes = new HashMap<>();
+
+        void removeStop(long id) {
+            stops.remove(id);
+            routes.replaceAll((route, sequence) -> Arrays.stream(sequence).filter(s -> s != id).toArray());
+        }
+
+        CompactGraph build() {
+            CompactGraph.Builder builder = CompactGraph.builder();
+            routes.forEach((route, sequence) -> {
+                for (long id : sequence) {
+                    Detail detail = stops.get(id);
+                    builder.addStop(id, detail.name, detail.code, detail.interchange, detail.latitude, detail.longitude);
+                }
+                builder.addRoute(route, "Line " + route, "C" + route, sequence, 2.0f);
+            });
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.moveinsync.metrobooking.graph;
+
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsEveryStopAndRoute() throws IOException {
+        CompactGraph.Builder builder = CompactGraph.builder()
+                .addStop(10, "Majestic", "MJS", true, 12.9767, 77.5713)
+                .addStop(20, "Cubbon Park", "CBP", false, 12.9810, 77.5970)
+                .addStop(30, "Mahatma Gandhi Road ಎಂ.ಜಿ", null, false, null, 77.6)
+                .addStop(40, "Indiranagar", "IDN", true, 12.9784, 77.6408);
+        builder.addRoute(1, "Purple", "#800080", new long[]{10, 20, 30, 40}, new float[]{0f, 2.5f, 1.5f, 3f});
+        builder.addRoute(2, "Green", null, new long[]{40, 10}, 2.0f);
+        builder.addRoute(3, "Empty", "GREY", new long[0], 2.0f);
+        MetroGraph graph = new MetroGraph(builder.build(), 42L);
+
+        Path file = directory.resolve("graph.bin");
+        GraphSnapshotFile.write(file, graph);
+        MetroGraph restored = GraphSnapshotFile.read(file);
+
+        assertEquals(42L, restored.getVersion());
+        assertEquals(graph.getCompact(), restored.getCompact());
+        assertEquals(graph.getCompact().edgeCount(), restored.getCompact().edgeCount());
+        assertEquals(graph.getCompact().stateCount(), restored.getCompact().stateCount());
+    }
+
+    @Test
+    void rejectsCorruptAndForeignFiles() throws IOException {
+        Path file = directory.resolve("graph.bin");
+        GraphSnapshotFile.write(file, new MetroGraph(TestNetworks.randomGraph(new Random(1), 200, 10), 3L));
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x10;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> GraphSnapshotFile.read(file));
+
+        Files.write(file, new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> GraphSnapshotFile.read(file));
+
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> GraphSnapshotFile.read(file));
+    }
+
+    @Test
+    void startsFasterFromTheSnapshotThanFromTheDatabase() throws IOException {
+        int stops = 20_000;
+        Random random = new Random(9);
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:snapshot;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE stops (id BIGINT PRIMARY KEY, name VARCHAR(255), code VARCHAR(255),"
+                + " is_interchange BOOLEAN, latitude DOUBLE PRECISION, longitude DOUBLE PRECISION)");
+        jdbc.execute("CREATE TABLE routes (id BIGINT PRIMARY KEY, name VARCHAR(255), color VARCHAR(255))");
+        jdbc.execute("CREATE TABLE route_stops (route_id BIGINT, stop_id BIGINT, stop_order INT,"
+                + " PRIMARY KEY (route_id, stop_order))");
+        List<Object[]> stopRows = new ArrayList<>();
+        for (long id = 1; id <= stops; id++) {
+            stopRows.add(new Object[]{id, "Stop " + id, "S" + id, id % 50 == 0,
+                    12.8 + random.nextDouble() * 0.3, 77.4 + random.nextDouble() * 0.3});
+        }
+        jdbc.batchUpdate("INSERT INTO stops VALUES (?, ?, ?, ?, ?, ?)", stopRows);
+        List<Object[]> routeStopRows = new ArrayList<>();
+        for (long route = 1; route <= 400; route++) {
+            jdbc.update("INSERT INTO routes VALUES (?, ?, ?)", route, "Line " + route, "C" + route);
+            for (int order = 0; order < 60; order++) {
+                routeStopRows.add(new Object[]{route, 1 + random.nextInt(stops), order});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO route_stops VALUES (?, ?, ?)", routeStopRows);
+
+        NetworkTopologyRepository repository = new NetworkTopologyRepository(dataSource);
+        Path file = directory.resolve("graph.bin");
+        // Warm both paths once so the comparison is not about class loading
+        GraphSnapshotFile.write(file, new MetroGraph(repository.load(2.0f).graph(), 1L));
+        GraphSnapshotFile.read(file);
+
+        long start = System.nanoTime();
+        CompactGraph fromDatabase = repository.load(2.0f).graph();
+        long databaseMicros = (System.nanoTime() - start) / 1_000;
+
+        start = System.nanoTime();
+        CompactGraph fromFile = GraphSnapshotFile.read(file).getCompact();
+        long fileMicros = (System.nanoTime() - start) / 1_000;
+
+        System.out.printf("Startup with %d stops / %d route stops: database %d us, snapshot file %d us (%d KB)%n",
+                fromDatabase.stopCount(), routeStopRows.size(), databaseMicros, fileMicros, Files.size(file) / 1024);
+        assertEquals(fromDatabase, fromFile);
+    }
+}
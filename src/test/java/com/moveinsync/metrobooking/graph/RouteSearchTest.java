@@ -0,0 +1,74 @@
+package com.moveinsync.metrobooking.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteSearchTest {
+
+    private final RouteSearch search = new RouteSearch(5.0);
+
+    // Every query on its own virtual thread, as requests run in the virtual-thread mode
+    @Test
+    void virtualThreadQueriesReuseScratchInsteadOfAllocatingPerQuery() throws Exception {
+        CompactGraph graph = TestNetworks.randomGraph(new Random(11), 300, 14);
+        Random random = new Random(5);
+        int queries = 3000;
+        int[][] pairs = new int[queries][];
+        double[] expected = new double[queries];
+        for (int i = 0; i < queries; i++) {
+            // PathFinderService answers source == destination before searching
+            int source = random.nextInt(graph.stopCount());
+            int destination = (source + 1 + random.nextInt(graph.stopCount() - 1)) % graph.stopCount();
+            pairs[i] = new int[]{source, destination};
+            expected[i] = search.shortestPath(graph, pairs[i][0], pairs[i][1]).getCost();
+        }
+
+        int before = SearchScratch.created();
+        List<Future<Double>> costs = new ArrayList<>(queries);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < queries; i++) {
+                int[] pair = pairs[i];
+                SearchMode mode = SearchMode.values()[i % SearchMode.values().length];
+                costs.add(executor.submit(() -> search.shortestPath(graph, pair[0], pair[1], mode).getCost()));
+            }
+            for (int i = 0; i < queries; i++) {
+                assertEquals(expected[i], costs.get(i).get(), 1e-6, "query " + i);
+            }
+        }
+
+        // At most two scratches in flight per carrier thread, whatever the number of threads
+        int created = SearchScratch.created() - before;
+        int carriers = Runtime.getRuntime().availableProcessors();
+        assertTrue(created <= 2 * (carriers + 1), created + " scratches for " + queries + " queries");
+    }
+
+    // A scratch that grows for a graph with more states but fewer stops must not
+    // read potentials memoised for the previous graph
+    @Test
+    void goalDirectedSearchesAgreeWithDijkstraAfterTheScratchGrows() {
+        CompactGraph sparse = TestNetworks.randomGraph(new Random(3), 400, 2);
+        CompactGraph dense = TestNetworks.randomGraph(new Random(4), 60, 40);
+        assertTrue(dense.stateCount() > sparse.stateCount());
+
+        for (CompactGraph graph : List.of(sparse, dense, sparse, dense)) {
+            for (int source = 0; source < graph.stopCount(); source += 7) {
+                for (int destination = 0; destination < graph.stopCount(); destination += 5) {
+                    if (source == destination) continue;
+                    double dijkstra = search.shortestPath(graph, source, destination).getCost();
+                    for (SearchMode mode : List.of(SearchMode.ASTAR, SearchMode.BIDIRECTIONAL)) {
+                        assertEquals(dijkstra, search.shortestPath(graph, source, destination, mode).getCost(), 1e-9,
+                                mode + " " + source + " -> " + destination);
+                    }
+                }
+            }
+        }
+    }
+}
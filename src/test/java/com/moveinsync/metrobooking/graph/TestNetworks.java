@@ -0,0 +1,75 @@
+package com.moveinsync.metrobooking.graph;
+
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Networks shared by the graph and path-finding tests, as the Route/Stop
+// entities GraphService reads from the database or straight as a CompactGraph.
+// Random lines may visit a stop more than once, as bad data in the database could.
+public final class TestNetworks {
+
+    private TestNetworks() {
+    }
+
+    // Stops 1..count named "Stop <id>", without coordinates
+    public static Map<Long, Stop> stops(int count) {
+        Map<Long, Stop> stops = new HashMap<>();
+        for (long id = 1; id <= count; id++) {
+            stops.put(id, Stop.builder().id(id).name("Stop " + id).code("S" + id).isInterchange(false).build());
+        }
+        return stops;
+    }
+
+    public static Route route(long id, String name, Map<Long, Stop> stops, long... stopIds) {
+        List<Stop> sequence = new ArrayList<>();
+        for (long stopId : stopIds) {
+            sequence.add(stops.get(stopId));
+        }
+        return Route.builder().id(id).name(name).color(name.toUpperCase()).stops(sequence).build();
+    }
+
+    // Lines of minLength..maxLength stops drawn at random from stopCount stops,
+    // placed somewhere in a 30 km square when withCoordinates
+    public static List<Route> randomRoutes(Random random, int stopCount, int lines, int minLength, int maxLength,
+                                           boolean withCoordinates) {
+        Map<Long, Stop> stops = stops(stopCount);
+        if (withCoordinates) {
+            for (long id = 1; id <= stopCount; id++) {
+                stops.get(id).setLatitude(12.8 + random.nextDouble() * 0.3);
+                stops.get(id).setLongitude(77.4 + random.nextDouble() * 0.3);
+            }
+        }
+        List<Route> routes = new ArrayList<>();
+        for (int line = 1; line <= lines; line++) {
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            long[] ids = new long[length];
+            for (int k = 0; k < length; k++) {
+                ids[k] = 1 + random.nextInt(stopCount);
+            }
+            routes.add(route(line, "Line " + line, stops, ids));
+        }
+        return routes;
+    }
+
+    // Random lines of 5 to 29 stops with coordinates, 2 minutes a hop
+    public static CompactGraph randomGraph(Random random, int stopCount, int lines) {
+        CompactGraph.Builder builder = CompactGraph.builder();
+        for (Route route : randomRoutes(random, stopCount, lines, 5, 29, true)) {
+            long[] ids = new long[route.getStops().size()];
+            for (int k = 0; k < ids.length; k++) {
+                Stop stop = route.getStops().get(k);
+                ids[k] = stop.getId();
+                builder.addStop(stop.getId(), stop.getName(), stop.getCode(), false,
+                        stop.getLatitude(), stop.getLongitude());
+            }
+            builder.addRoute(route.getId(), route.getName(), route.getColor(), ids, 2.0f);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,187 @@
+package com.moveinsync.metrobooking.loadtest;
+
+import com.moveinsync.metrobooking.loadtest.LoadGenerator.Operation;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.model.User;
+import com.moveinsync.metrobooking.repository.RouteRepository;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import com.moveinsync.metrobooking.repository.UserRepository;
+import com.moveinsync.metrobooking.security.JwtService;
+import com.moveinsync.metrobooking.service.GraphService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Finds how many bookings per second one instance sustains. Runs the whole app
+// on in-memory H2, seeds a grid network and a pool of users, then offers a
+// register/login/booking/my-bookings mix at each rate in turn:
+//
+//   mvn test -Dtest=BookingLoadTest -Dloadtest=true \
+//       [-Dloadtest.rates=25,50,100,200] [-Dloadtest.seconds=30] [-Dloadtest.users=200] \
+//       [-Dloadtest.mix=booking:60,my-bookings:25,login:10,register:5] (also: history) \
+//       [-Dspring.threads.virtual.enabled=true]
+//
+// Run it once with and once without virtual threads to compare the two modes.
+// A table per rate goes to stdout and the full latency distributions to
+// target/loadtest/<endpoint>-<rate>.hgrm.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class BookingLoadTest {
+
+    private static final String PASSWORD = "load-test-password";
+    private static final int GRID_SIDE = 10;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private StopRepository stopRepository;
+    @Autowired
+    private RouteRepository routeRepository;
+    @Autowired
+    private GraphService graphService;
+    @Autowired
+    private JwtService jwtService;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Test
+    void bookingThroughputPerOfferedRate() throws Exception {
+        double[] rates = Arrays.stream(System.getProperty("loadtest.rates", "25,50,100,200").split(","))
+                .mapToDouble(Double::parseDouble).toArray();
+        Duration step = Duration.ofSeconds(Long.getLong("loadtest.seconds", 30));
+        int userCount = Integer.getInteger("loadtest.users", 200);
+
+        List<Long> stopIds = seedNetwork();
+        List<String> emails = seedUsers(userCount);
+        List<String> tokens = emails.stream().map(jwtService::generateToken).toList();
+        List<Operation> mix = mix(System.getProperty("loadtest.mix", "booking:60,my-bookings:25,login:10,register:5"),
+                stopIds, emails, tokens);
+
+        System.out.printf("Request threads: %s%n", virtualThreads ? "virtual" : "platform");
+        try (LoadGenerator generator = new LoadGenerator()) {
+            // Warm-up at the lowest rate so JIT and connection setup stay out of the first step
+            LoadReport warmUp = generator.run(mix, rates[0], step.dividedBy(3), 0);
+            if (warmUp.errors("booking") > 0) warmUp.print(System.out);
+            assertTrue(warmUp.latencies("booking").getTotalCount() > 0, "no booking succeeded during warm-up");
+            assertEquals(0, warmUp.errors("booking"), "bookings fail at the lowest rate");
+
+            for (int i = 0; i < rates.length; i++) {
+                LoadReport report = generator.run(mix, rates[i], step, i + 1);
+                report.print(System.out);
+                report.writeHistograms(Path.of("target", "loadtest"));
+            }
+        }
+    }
+
+    private List<Operation> mix(String spec, List<Long> stopIds, List<String> emails, List<String> tokens) {
+        AtomicLong registrations = new AtomicLong();
+        List<Operation> mix = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":");
+            String name = parts[0].trim();
+            int weight = Integer.parseInt(parts[1].trim());
+            LoadGenerator.RequestFactory factory = switch (name) {
+                case "booking" -> random -> {
+                    long source = stopIds.get(random.nextInt(stopIds.size()));
+                    long destination = stopIds.get(random.nextInt(stopIds.size()));
+                    while (destination == source) destination = stopIds.get(random.nextInt(stopIds.size()));
+                    return post("/api/bookings", tokens.get(random.nextInt(tokens.size())),
+                            "{\"sourceStopId\":" + source + ",\"destinationStopId\":" + destination + "}");
+                };
+                case "my-bookings" -> random -> request("/api/bookings/my-bookings",
+                        tokens.get(random.nextInt(tokens.size()))).GET().build();
+                case "history" -> random -> request("/api/bookings/history?limit=20",
+                        tokens.get(random.nextInt(tokens.size()))).GET().build();
+                case "login" -> random -> post("/api/auth/login", null,
+                        credentials(emails.get(random.nextInt(emails.size()))));
+                case "register" -> random -> post("/api/auth/register", null,
+                        credentials("new-" + registrations.incrementAndGet() + "-" + System.nanoTime() + "@load.test"));
+                default -> throw new IllegalArgumentException("Unknown operation in loadtest.mix: " + name);
+            };
+            mix.add(new Operation(name, weight, factory));
+        }
+        return mix;
+    }
+
+    // A GRID_SIDE x GRID_SIDE grid with a line along every row and column
+    private List<Long> seedNetwork() throws InterruptedException {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < GRID_SIDE * GRID_SIDE; i++) {
+            stops.add(Stop.builder().name("Stop " + i).code("S" + i).isInterchange(true)
+                    .latitude(28.40 + (i / GRID_SIDE) * 0.009).longitude(76.90 + (i % GRID_SIDE) * 0.009).build());
+        }
+        stops = stopRepository.saveAll(stops);
+
+        List<Route> routes = new ArrayList<>();
+        for (int k = 0; k < GRID_SIDE; k++) {
+            List<Stop> row = new ArrayList<>();
+            List<Stop> column = new ArrayList<>();
+            for (int j = 0; j < GRID_SIDE; j++) {
+                row.add(stops.get(k * GRID_SIDE + j));
+                column.add(stops.get(j * GRID_SIDE + k));
+            }
+            routes.add(Route.builder().name("Row " + k).color("R" + k).stops(row).build());
+            routes.add(Route.builder().name("Column " + k).color("C" + k).stops(column).build());
+        }
+        routeRepository.saveAll(routes);
+
+        graphService.refreshGraph();
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (graphService.getGraph().getTotalStops() < stops.size()) {
+            assertTrue(System.nanoTime() < deadline, "graph was not rebuilt with the seeded network");
+            Thread.sleep(50);
+        }
+        return stops.stream().map(Stop::getId).toList();
+    }
+
+    // One BCrypt hash shared by every seeded user keeps seeding fast
+    private List<String> seedUsers(int count) {
+        String hash = passwordEncoder.encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(User.builder().email("rider" + i + "@load.test").password(hash)
+                    .name("rider" + i).role(User.Role.USER).build());
+        }
+        return userRepository.saveAll(users).stream().map(User::getEmail).toList();
+    }
+
+    private static String credentials(String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"" + PASSWORD + "\"}";
+    }
+
+    private HttpRequest post(String path, String token, String json) {
+        return request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30));
+        return token == null ? builder : builder.header("Authorization", "Bearer " + token);
+    }
+}
@@ -0,0 +1,91 @@
+package com.moveinsync.metrobooking.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-loop load: requests start on a fixed arrival schedule whatever the
+// server's latency, each on its own virtual thread. Latency is measured from
+// the scheduled start, so time spent queueing behind a slow server counts
+// against it instead of silently lowering the offered rate.
+final class LoadGenerator implements AutoCloseable {
+
+    // One kind of request in the mix; create() runs on the scheduling thread once per arrival
+    record Operation(String name, int weight, RequestFactory factory) {
+    }
+
+    @FunctionalInterface
+    interface RequestFactory {
+        HttpRequest create(SplittableRandom random);
+    }
+
+    private final HttpClient client;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    LoadGenerator() {
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    LoadReport run(List<Operation> mix, double ratePerSecond, Duration duration, long seed) {
+        int totalWeight = mix.stream().mapToInt(Operation::weight).sum();
+        SplittableRandom random = new SplittableRandom(seed);
+        LoadReport report = new LoadReport(ratePerSecond);
+        long interval = (long) (1_000_000_000L / ratePerSecond);
+        long arrivals = duration.toNanos() / interval;
+
+        long start = System.nanoTime();
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < arrivals; i++) {
+                long scheduled = start + i * interval;
+                for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+                Operation operation = pick(mix, random.nextInt(totalWeight));
+                HttpRequest request = operation.factory().create(random);
+                requests.submit(() -> send(operation.name(), request, scheduled, report));
+            }
+        } // waits for the requests still in flight
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private void send(String name, HttpRequest request, long scheduled, LoadReport report) {
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            long latency = System.nanoTime() - scheduled;
+            if (response.statusCode() / 100 == 2) {
+                report.success(name, latency);
+            } else {
+                report.error(name, "HTTP " + response.statusCode());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.error(name, "interrupted");
+        } catch (Exception e) {
+            report.error(name, e.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        executor.close();
+    }
+
+    private static Operation pick(List<Operation> mix, int ticket) {
+        for (Operation operation : mix) {
+            ticket -= operation.weight();
+            if (ticket < 0) return operation;
+        }
+        throw new IllegalStateException("Empty operation mix");
+    }
+}
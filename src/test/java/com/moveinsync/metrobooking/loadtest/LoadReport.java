@@ -0,0 +1,91 @@
+package com.moveinsync.metrobooking.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Results of one LoadGenerator run: a latency histogram of the successful
+// requests and a count per failure kind, for every operation in the mix
+final class LoadReport {
+
+    // Values are nanoseconds; three significant digits up to a minute
+    private static final long HIGHEST_TRACKABLE = 60_000_000_000L;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final double offeredRate;
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private long elapsedNanos;
+
+    LoadReport(double offeredRate) {
+        this.offeredRate = offeredRate;
+    }
+
+    void success(String name, long latencyNanos) {
+        endpoint(name).latencies.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE));
+    }
+
+    void error(String name, String kind) {
+        endpoint(name).errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    Histogram latencies(String name) {
+        return endpoint(name).latencies;
+    }
+
+    long errors(String name) {
+        return endpoint(name).errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    void print(PrintStream out) {
+        double seconds = elapsedNanos / 1e9;
+        out.printf("%n=== offered %.0f req/s for %.1f s ===%n", offeredRate, seconds);
+        out.printf("%-12s %8s %8s %9s %8s %8s %8s %9s %9s  %s%n", "endpoint", "ok", "errors",
+                "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "error kinds");
+        endpoints.forEach((name, endpoint) -> {
+            Histogram h = endpoint.latencies;
+            Map<String, Long> kinds = new TreeMap<>();
+            endpoint.errors.forEach((kind, count) -> kinds.put(kind, count.sum()));
+            out.printf("%-12s %8d %8d %9.1f %8.1f %8.1f %8.1f %9.1f %9.1f  %s%n", name, h.getTotalCount(),
+                    errors(name), h.getTotalCount() / seconds,
+                    millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9),
+                    h.getMaxValue() / NANOS_PER_MILLI, kinds.isEmpty() ? "" : kinds);
+        });
+    }
+
+    // One .hgrm file per endpoint, loadable in the HdrHistogram plotter
+    void writeHistograms(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Endpoint> entry : endpoints.entrySet()) {
+            Path file = directory.resolve(String.format("%s-%.0f.hgrm", entry.getKey(), offeredRate));
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                entry.getValue().latencies.outputPercentileDistribution(out, NANOS_PER_MILLI);
+            }
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> new Endpoint());
+    }
+
+    private static final class Endpoint {
+        final Histogram latencies = new ConcurrentHistogram(1, HIGHEST_TRACKABLE, 3);
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+}
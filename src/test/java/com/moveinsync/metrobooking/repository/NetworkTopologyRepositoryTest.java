@@ -0,0 +1,66 @@
+package com.moveinsync.metrobooking.repository;
+
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository.LoadedNetwork;
+import com.moveinsync.metrobooking.service.GraphService;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkTopologyRepositoryTest {
+
+    @Test
+    void loadsTheSameGraphAsTheEntities() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:topology;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        // Same layout Hibernate generates for Stop, Route and the ordered route_stops join table
+        jdbc.execute("CREATE TABLE stops (id BIGINT PRIMARY KEY, name VARCHAR(255), code VARCHAR(255),"
+                + " is_interchange BOOLEAN, latitude DOUBLE PRECISION, longitude DOUBLE PRECISION)");
+        jdbc.execute("CREATE TABLE routes (id BIGINT PRIMARY KEY, name VARCHAR(255), color VARCHAR(255))");
+        jdbc.execute("CREATE TABLE route_stops (route_id BIGINT, stop_id BIGINT, stop_order INT,"
+                + " PRIMARY KEY (route_id, stop_order))");
+
+        List<Stop> stops = new ArrayList<>();
+        for (long id = 1; id <= 8; id++) {
+            Stop stop = Stop.builder().id(id).name("Stop " + id).code("S" + id)
+                    .isInterchange(id % 3 == 0 ? Boolean.TRUE : id == 4 ? null : Boolean.FALSE)
+                    .latitude(id == 5 ? null : 12.9 + id * 0.01).longitude(77.6).build();
+            stops.add(stop);
+            jdbc.update("INSERT INTO stops VALUES (?, ?, ?, ?, ?, ?)", stop.getId(), stop.getName(),
+                    stop.getCode(), stop.getIsInterchange(), stop.getLatitude(), stop.getLongitude());
+        }
+        // Stop 8 is on no route, route 3 has no stops yet; positions are inserted out of order
+        List<Route> routes = List.of(
+                route(jdbc, 1, "Red", stops, 3, 1, 2, 6),
+                route(jdbc, 2, "Blue", stops, 5, 3, 4, 7, 3),
+                route(jdbc, 3, "Green", stops));
+
+        LoadedNetwork loaded = new NetworkTopologyRepository(dataSource).load(2.0f);
+
+        CompactGraph expected = GraphService.buildGraph(routes).getCompact();
+        assertEquals(expected, loaded.graph());
+        assertEquals(7, loaded.stopRows());
+        assertEquals(3, loaded.routeRows());
+        assertEquals(9, loaded.routeStopRows());
+    }
+
+    private static Route route(JdbcTemplate jdbc, long id, String name, List<Stop> stops, int... sequence) {
+        jdbc.update("INSERT INTO routes VALUES (?, ?, ?)", id, name, name.toUpperCase());
+        List<Stop> ordered = new ArrayList<>();
+        for (int order = sequence.length - 1; order >= 0; order--) {
+            jdbc.update("INSERT INTO route_stops VALUES (?, ?, ?)", id, sequence[order], order);
+        }
+        for (int stopId : sequence) {
+            ordered.add(stops.get(stopId - 1));
+        }
+        return Route.builder().id(id).name(name).color(name.toUpperCase()).stops(ordered).build();
+    }
+}
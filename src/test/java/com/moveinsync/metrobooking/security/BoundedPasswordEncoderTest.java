@@ -0,0 +1,44 @@
+package com.moveinsync.metrobooking.security;
+
+import com.moveinsync.metrobooking.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void hashesAndFlagsHashesOfAnotherCost() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(5, 1, 4, meterRegistry);
+
+        String hash = encoder.encode("secret");
+        assertTrue(hash.startsWith("$2a$05$"));
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("Secret", hash));
+        assertFalse(encoder.upgradeEncoding(hash));
+        assertTrue(encoder.upgradeEncoding(new BoundedPasswordEncoder(4, 1, 4, meterRegistry).encode("secret")));
+        assertEquals(2, meterRegistry.get("metro.password.hash").tag("op", "matches").timer().count());
+    }
+
+    @Test
+    void refusesWorkOnceTheQueueIsFull() throws Exception {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(13, 1, 1, meterRegistry);
+
+        // One hash running, one queued
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+        while (meterRegistry.get("metro.password.queue.depth").gauge().value() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(ServiceBusyException.class, () -> encoder.matches("c", "$2a$13$abcdefghijklmnopqrstuv"));
+        assertEquals(1.0, meterRegistry.get("metro.password.rejected").counter().count());
+        assertNotNull(running.get());
+        assertNotNull(queued.get());
+    }
+}
@@ -0,0 +1,72 @@
+package com.moveinsync.metrobooking.security;
+
+import com.moveinsync.metrobooking.model.User;
+import com.moveinsync.metrobooking.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CustomUserDetailsServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final UserCache userCache = new UserCache(100, 300, meterRegistry);
+    private final CustomUserDetailsService service = new CustomUserDetailsService(userRepository, userCache);
+
+    @Test
+    void resolvesEachUserOnceUntilItChanges() {
+        User user = User.builder().id(7L).email("a@metro.in").password("hash").name("a").role(User.Role.ADMIN).build();
+        when(userRepository.findByEmail("a@metro.in")).thenReturn(Optional.of(user));
+
+        for (int i = 0; i < 10; i++) {
+            UserPrincipal principal = service.loadUserByUsername("a@metro.in");
+            assertEquals(7L, principal.getUser().getId());
+            assertEquals("ROLE_ADMIN", principal.getAuthorities().iterator().next().getAuthority());
+        }
+        verify(userRepository, times(1)).findByEmail("a@metro.in");
+        assertEquals(0.9, meterRegistry.get("metro.user.cache.hit.ratio").gauge().value(), 1e-9);
+
+        new UserChangeListener(userCache).userChanged(user);
+        service.loadUserByUsername("a@metro.in");
+        verify(userRepository, times(2)).findByEmail("a@metro.in");
+    }
+
+    @Test
+    void doesNotCacheUnknownUsers() {
+        when(userRepository.findByEmail("ghost@metro.in")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("ghost@metro.in"));
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("ghost@metro.in"));
+        verify(userRepository, times(2)).findByEmail("ghost@metro.in");
+        assertEquals(0, userCache.size());
+    }
+
+    @Test
+    void rehashesOnLoginWhenTheCostChanges() {
+        BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(5, 1, 4, meterRegistry);
+        String oldHash = new BoundedPasswordEncoder(4, 1, 4, meterRegistry).encode("secret");
+        User user = User.builder().id(7L).email("a@metro.in").password(oldHash).name("a").role(User.Role.USER).build();
+        when(userRepository.findByEmail("a@metro.in")).thenReturn(Optional.of(user));
+        when(userRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider(service);
+        provider.setPasswordEncoder(encoder);
+        provider.setUserDetailsPasswordService(service);
+
+        Authentication authentication = provider.authenticate(
+                new UsernamePasswordAuthenticationToken("a@metro.in", "secret"));
+
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        assertTrue(principal.getPassword().startsWith("$2a$05$"));
+        assertTrue(encoder.matches("secret", principal.getPassword()));
+        verify(userRepository).save(user);
+    }
+}
@@ -0,0 +1,42 @@
+package com.moveinsync.metrobooking.security;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-jwt-secret-that-is-long-enough-for-hs256";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void verifiesEachTokenOnceAndServesRepeatsFromTheCache() {
+        JwtService jwtService = new JwtService(SECRET, 60_000, 100, meterRegistry);
+        String token = jwtService.generateToken("a@metro.in");
+
+        Claims first = jwtService.verify(token);
+        assertEquals("a@metro.in", first.getSubject());
+        assertSame(first, jwtService.verify(token));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "jwtClaims").tag("result", "hit")
+                .functionCounter().count());
+
+        // Same signature, different payload: must not ride on the cached entry
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + new JwtService(SECRET, 60_000, 0, meterRegistry)
+                .generateToken("b@metro.in").split("\\.")[1] + "." + parts[2];
+        assertNull(jwtService.verify(forged));
+        assertNull(jwtService.verify("not-a-jwt"));
+        assertEquals(2.0, meterRegistry.get("metro.jwt.rejected").tag("reason", "invalid").counter().count());
+    }
+
+    @Test
+    void refusesExpiredTokens() {
+        JwtService jwtService = new JwtService(SECRET, -1_000, 100, meterRegistry);
+
+        assertNull(jwtService.verify(jwtService.generateToken("a@metro.in")));
+        assertEquals(1.0, meterRegistry.get("metro.jwt.rejected").tag("reason", "expired").counter().count());
+    }
+}
@@ -0,0 +1,99 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.BookingHistoryPage;
+import com.moveinsync.metrobooking.dto.BookingSummary;
+import com.moveinsync.metrobooking.exception.InvalidCursorException;
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.model.User;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import com.moveinsync.metrobooking.security.UserCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.cache.test.autoconfigure.AutoConfigureCache;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@AutoConfigureCache
+class BookingHistoryTest {
+
+    // User's entity listener evicts from UserCache, which the JPA slice does not scan
+    @TestConfiguration
+    static class UserCacheConfig {
+        @Bean
+        UserCache userCache() {
+            return new UserCache(10, 60, new SimpleMeterRegistry());
+        }
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Test
+    void pagesThroughHistoryNewestFirstWithoutGapsOrRepeats() {
+        User rider = persist(User.builder().email("r@metro.in").password("x").name("r").role(User.Role.USER).build());
+        User other = persist(User.builder().email("o@metro.in").password("x").name("o").role(User.Role.USER).build());
+        Stop from = persist(Stop.builder().name("Rajiv Chowk").code("RC").build());
+        Stop to = persist(Stop.builder().name("Kashmere Gate").code("KG").build());
+
+        // Three bookings share each timestamp, so the id has to break ties
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 8, 0);
+        for (int i = 0; i < 30; i++) {
+            Booking booking = persist(Booking.builder().bookingReference("MIS-" + i).user(rider)
+                    .sourceStop(from).destinationStop(to).qrString("qr-" + i).totalStops(3).build());
+            setCreatedAt(booking, start.plusMinutes(i / 3));
+        }
+        persist(Booking.builder().bookingReference("MIS-OTHER").user(other)
+                .sourceStop(from).destinationStop(to).qrString("qr").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        BookingService bookingService = new BookingService(bookingRepository, null, null, null, null, null, null,
+                null, null, null);
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            BookingHistoryPage page = bookingService.getBookingHistory(rider.getId(), cursor, 7);
+            page.getBookings().forEach(b -> seen.add(b.getBookingReference()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        List<String> expected = new ArrayList<>();
+        for (int i = 29; i >= 0; i--) expected.add("MIS-" + i);
+        assertEquals(expected, seen);
+
+        BookingSummary newest = bookingService.getBookingHistory(rider.getId(), null, 1).getBookings().getFirst();
+        assertEquals("Rajiv Chowk", newest.getSourceStop());
+        assertEquals("Kashmere Gate", newest.getDestinationStop());
+        assertEquals(Booking.BookingStatus.CONFIRMED, newest.getStatus());
+        assertThrows(InvalidCursorException.class, () -> bookingService.getBookingHistory(rider.getId(), "garbage!", 7));
+    }
+
+    private <T> T persist(T entity) {
+        entityManager.persist(entity);
+        return entity;
+    }
+
+    private void setCreatedAt(Booking booking, LocalDateTime createdAt) {
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Booking b SET b.createdAt = :createdAt WHERE b.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("id", booking.getId())
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,115 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.repository.BookingPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class BookingPartitionManagerTest {
+
+    private static final YearMonth NOW = YearMonth.of(2026, 10);
+
+    private final BookingPartitionRepository repository = mock(BookingPartitionRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private BookingPartitionManager manager;
+
+    @TempDir
+    Path archiveDir;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.tryLock()).thenReturn(true);
+        manager = new BookingPartitionManager(repository, transactionManager);
+        ReflectionTestUtils.setField(manager, "archiveDir", archiveDir);
+    }
+
+    @Test
+    void convertsOnceFromTheOldestBookingAndKeepsMonthsAhead() {
+        when(repository.isPartitioned()).thenReturn(false);
+        when(repository.createdAtRange()).thenReturn(new YearMonth[]{YearMonth.of(2025, 2), NOW});
+        when(repository.partitions()).thenReturn(List.of("bookings_default", "bookings_p202610", "bookings_p202611",
+                "bookings_p202612", "bookings_p202701"));
+
+        manager.maintain(NOW);
+
+        verify(repository).partition(YearMonth.of(2025, 2), YearMonth.of(2027, 1));
+        verify(repository, never()).createPartition(any());
+
+        // A month on, only the newly due partition is added
+        when(repository.isPartitioned()).thenReturn(true);
+        manager.maintain(NOW.plusMonths(1));
+        verify(repository).createPartition(YearMonth.of(2027, 2));
+        verify(repository, times(1)).createPartition(any());
+        verify(repository, times(1)).partition(any(), any());
+        verify(repository, never()).detachAndDrop(any());
+    }
+
+    @Test
+    void archivesOldPartitionsToNdjsonBeforeDroppingThem() throws Exception {
+        ReflectionTestUtils.setField(manager, "archiveAfterMonths", 12);
+        when(repository.isPartitioned()).thenReturn(true);
+        when(repository.partitions()).thenReturn(List.of("bookings_default", "bookings_p202508", "bookings_p202509",
+                "bookings_p202510", "bookings_p202610", "bookings_p202611", "bookings_p202612", "bookings_p202701"));
+        exportRows("bookings_p202508", 2500);
+        exportRows("bookings_p202509", 3);
+        when(repository.countRows("bookings_p202508")).thenReturn(2500L);
+        when(repository.countRows("bookings_p202509")).thenReturn(4L); // a late insert
+
+        manager.maintain(NOW);
+
+        verify(repository).detachAndDrop("bookings_p202508");
+        verify(repository, never()).detachAndDrop("bookings_p202509");
+        verify(repository, never()).exportRows(eq("bookings_p202510"), any());
+        List<String> rows = read(archiveDir.resolve("bookings_p202508.ndjson.gz"));
+        assertEquals(2500, rows.size());
+        assertEquals("{\"id\":2499,\"status\":\"USED\"}", rows.getLast());
+        assertFalse(Files.exists(archiveDir.resolve("bookings_p202509.ndjson.gz")));
+        assertFalse(Files.exists(archiveDir.resolve("bookings_p202509.ndjson.gz.partial")));
+    }
+
+    @Test
+    void leavesTheWorkToTheInstanceHoldingTheLock() {
+        when(repository.tryLock()).thenReturn(false);
+        ReflectionTestUtils.setField(manager, "archiveAfterMonths", 12);
+
+        manager.maintain(NOW);
+
+        verify(repository, never()).isPartitioned();
+        verify(repository, never()).partitions();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void exportRows(String partition, int count) {
+        when(repository.exportRows(eq(partition), any())).thenAnswer(invocation -> {
+            Consumer<String> rows = invocation.getArgument(1);
+            for (int i = 0; i < count; i++) rows.accept("{\"id\":" + i + ",\"status\":\"USED\"}");
+            return (long) count;
+        });
+    }
+
+    private static List<String> read(Path file) throws Exception {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return in.lines().toList();
+        }
+    }
+}
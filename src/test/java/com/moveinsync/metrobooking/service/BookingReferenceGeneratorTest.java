@@ -0,0 +1,121 @@
+package com.moveinsync.metrobooking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookingReferenceGeneratorTest {
+
+    private static final long NOW = 1_792_281_600_000L; // 2026-10-18T00:00:00Z
+
+    @Test
+    void millionsOfIdsAcrossNodesAndVirtualThreadsNeverCollide() throws Exception {
+        int nodes = 4;
+        int threadsPerNode = 64;
+        int idsPerThread = 10_000;
+        // A clock crawling at 1 ms per 1000 reads, so most ids share a millisecond
+        AtomicLong ticks = new AtomicLong();
+        BookingReferenceGenerator[] generators = new BookingReferenceGenerator[nodes];
+        for (int n = 0; n < nodes; n++) {
+            generators[n] = new BookingReferenceGenerator(n * 100, () -> NOW + ticks.incrementAndGet() / 1000);
+        }
+
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < nodes * threadsPerNode; t++) {
+                BookingReferenceGenerator generator = generators[t % nodes];
+                results.add(threads.submit(() -> {
+                    long[] ids = new long[idsPerThread];
+                    for (int i = 0; i < idsPerThread; i++) ids[i] = generator.nextId();
+                    return ids;
+                }));
+            }
+        }
+
+        long[] all = new long[nodes * threadsPerNode * idsPerThread];
+        int filled = 0;
+        for (Future<long[]> result : results) {
+            long[] ids = result.get();
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1], "ids of one node went backwards");
+            }
+            System.arraycopy(ids, 0, all, filled, ids.length);
+            filled += ids.length;
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "duplicate id");
+        }
+    }
+
+    @Test
+    void referencesSortInIssueOrderAndCarryTheirCheckSymbol() {
+        AtomicLong clock = new AtomicLong(NOW + 3_600_000);
+        BookingReferenceGenerator generator = new BookingReferenceGenerator(7, clock::get);
+
+        String previous = "";
+        for (int i = 0; i < 10_000; i++) {
+            if (i % 3000 == 2999) clock.addAndGet(-5); // clock stepping back
+            String reference = generator.next();
+            assertTrue(reference.startsWith("MIS-20261018-"), reference);
+            assertEquals(24, reference.length(), reference);
+            assertTrue(BookingReferenceGenerator.isWellFormed(reference), reference);
+            assertEquals(reference, BookingReferenceGenerator.format(BookingReferenceGenerator.idOf(reference)));
+            assertTrue(reference.compareTo(previous) > 0, reference + " after " + previous);
+            previous = reference;
+        }
+    }
+
+    @Test
+    void checkSymbolCatchesTyposAndSwaps() {
+        String reference = new BookingReferenceGenerator(3, () -> NOW + 12_345_678).next();
+        char[] chars = reference.toCharArray();
+        int bodyStart = "MIS-20261018-".length();
+
+        for (int i = bodyStart; i < chars.length - 1; i++) {
+            char original = chars[i];
+            for (char c : "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray()) {
+                if (c == original) continue;
+                chars[i] = c;
+                assertFalse(BookingReferenceGenerator.isWellFormed(new String(chars)), new String(chars));
+            }
+            chars[i] = original;
+
+            if (i + 1 < chars.length - 1 && chars[i] != chars[i + 1]) {
+                chars[i] = chars[i + 1];
+                chars[i + 1] = original;
+                assertFalse(BookingReferenceGenerator.isWellFormed(new String(chars)), new String(chars));
+                chars[i + 1] = chars[i];
+                chars[i] = original;
+            }
+        }
+        assertTrue(BookingReferenceGenerator.isWellFormed(new String(chars)));
+        assertFalse(BookingReferenceGenerator.isWellFormed("MIS-20240221-ABC123"));
+        assertEquals(-1, BookingReferenceGenerator.idOf("MIS-20240221-ABC123"));
+    }
+
+    @Test
+    void readsTheIssueDateOfAnyReference() {
+        String reference = new BookingReferenceGenerator(3, () -> NOW + 86_399_999).next();
+        assertEquals(LocalDate.of(2026, 10, 18), BookingReferenceGenerator.dateOf(reference));
+        assertEquals(LocalDate.of(2024, 2, 21), BookingReferenceGenerator.dateOf("MIS-20240221-ABC123"));
+        assertNull(BookingReferenceGenerator.dateOf("MIS-2024022-ABC123"));
+        assertNull(BookingReferenceGenerator.dateOf("MIS-20241321-ABC123"));
+        assertNull(BookingReferenceGenerator.dateOf("BOOKING-1"));
+    }
+
+    @Test
+    void rejectsNodeIdsOutsideTheTenBitRange() {
+        assertThrows(IllegalArgumentException.class, () -> new BookingReferenceGenerator(-1, () -> NOW));
+        assertThrows(IllegalArgumentException.class, () -> new BookingReferenceGenerator(1024, () -> NOW));
+    }
+}
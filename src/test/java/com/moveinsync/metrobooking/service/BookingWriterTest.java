@@ -0,0 +1,108 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BookingWriterTest {
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AtomicLong ids = new AtomicLong();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private BookingWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(bookingRepository.saveAll(anyList())).thenAnswer(call -> {
+            List<Booking> bookings = call.getArgument(0);
+            batchSizes.add(bookings.size());
+            if (bookings.stream().anyMatch(b -> b.getBookingReference().equals("BAD"))) {
+                throw new DataIntegrityViolationException("duplicate reference");
+            }
+            bookings.forEach(b -> b.setId(ids.incrementAndGet()));
+            return bookings;
+        });
+        when(bookingRepository.save(any())).thenAnswer(call -> {
+            Booking booking = call.getArgument(0);
+            if (booking.getBookingReference().equals("BAD")) {
+                throw new DataIntegrityViolationException("duplicate reference");
+            }
+            booking.setId(ids.incrementAndGet());
+            return booking;
+        });
+
+        writer = new BookingWriter(bookingRepository, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writer, "batchEnabled", true);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "maxWaitMs", 50L);
+        writer.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.shutdown();
+    }
+
+    @Test
+    void concurrentBookingsShareACommit() throws Exception {
+        List<Future<Booking>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 40; i++) {
+                Booking booking = booking("MIS-" + i);
+                results.add(callers.submit(() -> writer.save(booking)));
+            }
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            Booking saved = results.get(i).get();
+            assertEquals("MIS-" + i, saved.getBookingReference());
+            assertNotNull(saved.getId());
+        }
+        assertEquals(40, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < 40, "bookings were not grouped: " + batchSizes);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 10), "batch over the limit: " + batchSizes);
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void aFailingBookingOnlyFailsItsOwnCaller() throws Exception {
+        List<Future<Booking>> results = new ArrayList<>();
+        try (ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String reference : List.of("MIS-1", "BAD", "MIS-2")) {
+                Booking booking = booking(reference);
+                results.add(callers.submit(() -> writer.save(booking)));
+            }
+        }
+
+        assertNotNull(results.get(0).get().getId());
+        assertNotNull(results.get(2).get().getId());
+        Exception failure = assertThrows(Exception.class, () -> results.get(1).get());
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+    }
+
+    private static Booking booking(String reference) {
+        return Booking.builder().bookingReference(reference).qrString(reference + ".qr").build();
+    }
+}
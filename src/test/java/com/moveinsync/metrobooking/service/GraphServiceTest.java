@@ -0,0 +1,145 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.graph.GraphSnapshotFile;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository;
+import com.moveinsync.metrobooking.repository.NetworkTopologyRepository.LoadedNetwork;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.Mockito.*;
+
+class GraphServiceTest {
+
+    private final NetworkTopologyRepository topologyRepository = mock(NetworkTopologyRepository.class);
+    private final StopRepository stopRepository = mock(StopRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GraphService graphService;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        graphService = new GraphService(topologyRepository, stopRepository, new PathFinderService(meterRegistry),
+                meterRegistry, transactionManager);
+        ReflectionTestUtils.setField(graphService, "rebuildDebounceMs", 200L);
+        graphService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        graphService.shutdown();
+    }
+
+    @Test
+    void editsAreCoalescedIntoOneBackgroundRebuild() throws InterruptedException {
+        when(topologyRepository.load(anyFloat())).thenReturn(network(List.of(line(1, 1, 2, 3))));
+        MetroGraph first = graphService.getGraph();
+        assertEquals(1, first.getVersion());
+        assertEquals(3, first.getTotalStops());
+
+        when(topologyRepository.load(anyFloat())).thenReturn(network(List.of(line(1, 1, 2, 3), line(2, 3, 4))));
+        for (int i = 0; i < 5; i++) {
+            graphService.refreshGraph();
+        }
+        // Readers keep the previous snapshot until the rebuild is swapped in
+        assertSame(first, graphService.getGraph());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (graphService.getGraph() == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        MetroGraph second = graphService.getGraph();
+        assertEquals(2, second.getVersion());
+        assertEquals(4, second.getTotalStops());
+        verify(topologyRepository, times(2)).load(anyFloat());
+        assertEquals(2.0, meterRegistry.get("metro.graph.version").gauge().value());
+        assertEquals(2, meterRegistry.get("metro.graph.rebuild").timer().count());
+    }
+
+    @Test
+    void routeEditsAreAppliedWithoutReloadingTheNetwork() throws InterruptedException {
+        when(topologyRepository.load(anyFloat())).thenReturn(network(List.of(line(1, 1, 2, 3))));
+        MetroGraph first = graphService.getGraph();
+
+        // The request body only carries the id of the stop that is new to the network
+        Route added = line(2, 3, 4);
+        Stop stored = added.getStops().get(1);
+        added.getStops().set(1, Stop.builder().id(4L).build());
+        when(stopRepository.findAllById(List.of(4L))).thenReturn(List.of(stored));
+        graphService.applyRouteChange(added);
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (graphService.getGraph() == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        MetroGraph second = graphService.getGraph();
+        assertEquals(2, second.getVersion());
+        assertEquals(GraphService.buildGraph(List.of(line(1, 1, 2, 3), line(2, 3, 4))).getCompact(),
+                second.getCompact());
+        verify(topologyRepository, times(1)).load(anyFloat());
+    }
+
+    @Test
+    void anEditBeforeTheFirstBuildSchedulesAFullRebuild() {
+        when(topologyRepository.load(anyFloat())).thenReturn(network(List.of(line(1, 1, 2, 3), line(2, 3, 4))));
+        graphService.applyRouteChange(line(2, 3, 4));
+
+        // Nothing was built yet, so the edit is not dropped but read back with the rest
+        verify(topologyRepository, timeout(5_000)).load(anyFloat());
+        verify(stopRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void restoresTheSnapshotFileAndKeepsItWhenTheDatabaseMatches(@TempDir Path directory) throws Exception {
+        List<Route> routes = List.of(line(1, 1, 2, 3), line(2, 3, 4));
+        Path file = directory.resolve("graph.bin");
+        GraphSnapshotFile.write(file, GraphService.buildGraph(routes, 7L));
+        when(topologyRepository.load(anyFloat())).thenReturn(network(routes));
+
+        graphService.shutdown();
+        graphService = new GraphService(topologyRepository, stopRepository, new PathFinderService(meterRegistry),
+                meterRegistry, transactionManager);
+        ReflectionTestUtils.setField(graphService, "snapshotPath", file.toString());
+        graphService.init();
+
+        // Served from the file before the database was touched
+        assertEquals(7, graphService.getGraph().getVersion());
+        verify(topologyRepository, never()).load(anyFloat());
+
+        graphService.warmUp();
+        verify(topologyRepository, timeout(5_000)).load(anyFloat());
+        Thread.sleep(100);
+        assertEquals(7, graphService.getGraph().getVersion());
+    }
+
+    private static LoadedNetwork network(List<Route> routes) {
+        return new LoadedNetwork(GraphService.buildGraph(routes).getCompact(), 0, routes.size(), 0, 0);
+    }
+
+    private static Route line(long id, long... stopIds) {
+        List<Stop> stops = new java.util.ArrayList<>();
+        for (long stopId : stopIds) {
+            stops.add(Stop.builder().id(stopId).name("Stop " + stopId).code("S" + stopId).build());
+        }
+        return Route.builder().id(id).name("Line " + id).color("RED").stops(stops).build();
+    }
+}
@@ -0,0 +1,247 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.PathResult;
+import com.moveinsync.metrobooking.graph.ContractionHierarchy;
+import com.moveinsync.metrobooking.graph.GraphEdge;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.graph.RouteTable;
+import com.moveinsync.metrobooking.graph.SearchMode;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.moveinsync.metrobooking.graph.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathFinderServiceTest {
+
+    private final PathFinderService pathFinderService = new PathFinderService(new SimpleMeterRegistry());
+
+    @Test
+    void keepsRidingTheLineWhenAnotherLineReachesTheStopFirst() {
+        Map<Long, Stop> stops = stops(4);
+        // Red: S-X-B-D, Blue: S-B. Blue reaches B first but continuing to D needs a change.
+        List<Route> routes = List.of(
+                route(1, "Red", stops, 1, 2, 3, 4),
+                route(2, "Blue", stops, 1, 3));
+        MetroGraph graph = GraphService.buildGraph(routes);
+
+        PathResult result = pathFinderService.findOptimalPath(graph, 1L, 4L);
+
+        assertTrue(result.isPathFound());
+        assertEquals(6.0, result.getTotalTravelTime(), 1e-9);
+        assertEquals(0, result.getTotalInterchanges());
+        assertEquals(9.0, legacyCost(graph, 1L, 4L), 1e-9);
+    }
+
+    @Test
+    void neverWorseThanThePreviousSearchOnRandomNetworks() {
+        Random random = new Random(42);
+        for (int round = 0; round < 30; round++) {
+            int stopCount = 20 + random.nextInt(60);
+            int lines = 2 + random.nextInt(6);
+            MetroGraph graph = GraphService.buildGraph(randomRoutes(random, stopCount, lines, 3, 17, false));
+
+            for (Long source : graph.getNodes().keySet()) {
+                for (Long destination : graph.getNodes().keySet()) {
+                    if (source.equals(destination)) continue;
+                    PathResult result = pathFinderService.findOptimalPath(graph, source, destination);
+                    double legacy = legacyCost(graph, source, destination);
+
+                    assertEquals(legacy != Double.MAX_VALUE, result.isPathFound());
+                    if (result.isPathFound()) {
+                        assertTrue(result.getTotalTravelTime() <= legacy + 1e-9,
+                                source + " -> " + destination);
+                        assertEquals(result.getTotalTravelTime(), recomputedCost(graph, result), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeTableAnswersLikeTheLiveSearch() {
+        MetroGraph graph = randomGraph(new Random(7), 120, 8);
+        RouteTable table = RouteTable.build(graph.getCompact(), graph.getVersion(),
+                pathFinderService.getRouteSearch(), ForkJoinPool.commonPool());
+        MetroGraph tabled = graph.withRouteTable(table);
+
+        for (Long source : graph.getNodes().keySet()) {
+            for (Long destination : graph.getNodes().keySet()) {
+                PathResult live = pathFinderService.findOptimalPath(graph, source, destination);
+                PathResult precomputed = pathFinderService.findOptimalPath(tabled, source, destination);
+
+                assertEquals(live.isPathFound(), precomputed.isPathFound());
+                assertEquals(live.getTotalTravelTime(), precomputed.getTotalTravelTime(), 1e-4);
+                if (precomputed.isPathFound()) {
+                    // Equal-cost ties may pick different trips; the table must agree with its own chain
+                    assertEquals(table.interchanges(graph.getCompact().indexOf(source),
+                            graph.getCompact().indexOf(destination)), precomputed.getTotalInterchanges());
+                }
+            }
+        }
+    }
+
+    @Test
+    void contractionHierarchyFindsTheSameCosts() {
+        Random random = new Random(11);
+        for (int round = 0; round < 5; round++) {
+            MetroGraph graph = randomGraph(random, 150 + random.nextInt(150), 6 + random.nextInt(10));
+            ContractionHierarchy hierarchy = ContractionHierarchy.build(graph.getCompact(), graph.getVersion(),
+                    pathFinderService.getRouteSearch().getTransferPenalty(), ForkJoinPool.commonPool());
+            MetroGraph contracted = graph.withHierarchy(hierarchy);
+
+            for (Long source : graph.getNodes().keySet()) {
+                for (Long destination : graph.getNodes().keySet()) {
+                    PathResult live = pathFinderService.findOptimalPath(graph, source, destination);
+                    PathResult viaHierarchy = pathFinderService.findOptimalPath(contracted, source, destination);
+
+                    assertEquals(live.isPathFound(), viaHierarchy.isPathFound());
+                    if (live.isPathFound()) {
+                        assertEquals(live.getTotalTravelTime(), viaHierarchy.getTotalTravelTime(), 1e-9);
+                        // The unpacked trip must really cost what the hierarchy claims
+                        assertEquals(viaHierarchy.getTotalTravelTime(), recomputedCost(graph, viaHierarchy), 1e-9);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void goalDirectedSearchesAgreeWithDijkstra() {
+        Random random = new Random(23);
+        for (int round = 0; round < 10; round++) {
+            MetroGraph graph = randomGraph(random, 60 + random.nextInt(60), 4 + random.nextInt(6), true);
+            assertTrue(graph.getCompact().hasCoordinates());
+
+            for (Long source : graph.getNodes().keySet()) {
+                for (Long destination : graph.getNodes().keySet()) {
+                    PathResult dijkstra = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.DIJKSTRA);
+                    for (SearchMode mode : List.of(SearchMode.ASTAR, SearchMode.BIDIRECTIONAL)) {
+                        PathResult result = pathFinderService.findOptimalPath(graph, source, destination, mode);
+
+                        assertEquals(dijkstra.isPathFound(), result.isPathFound(), mode + " " + source + " -> " + destination);
+                        if (result.isPathFound()) {
+                            assertEquals(dijkstra.getTotalTravelTime(), result.getTotalTravelTime(), 1e-9);
+                            assertEquals(result.getTotalTravelTime(), recomputedCost(graph, result), 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void goalDirectedSearchesExpandFewerStatesAcrossTheCity() {
+        // 20x20 grid, one line per row and per column, roughly 1 km between stops
+        int side = 20;
+        Map<Long, Stop> stops = new HashMap<>();
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                long id = r * side + c + 1;
+                stops.put(id, Stop.builder().id(id).name("Stop " + id).code("S" + id).isInterchange(true)
+                        .latitude(12.90 + r * 0.009).longitude(77.50 + c * 0.009).build());
+            }
+        }
+        List<Route> routes = new ArrayList<>();
+        for (int i = 0; i < side; i++) {
+            long[] row = new long[side];
+            long[] column = new long[side];
+            for (int k = 0; k < side; k++) {
+                row[k] = i * side + k + 1;
+                column[k] = k * side + i + 1;
+            }
+            routes.add(route(i + 1, "Row " + i, stops, row));
+            routes.add(route(side + i + 1, "Column " + i, stops, column));
+        }
+        MetroGraph graph = GraphService.buildGraph(routes);
+
+        // Corner to the middle of the far edge
+        Long source = 1L;
+        Long destination = (long) side * side - side / 2;
+        PathResult dijkstra = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.DIJKSTRA);
+        PathResult astar = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.ASTAR);
+        PathResult bidirectional = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.BIDIRECTIONAL);
+
+        assertEquals(dijkstra.getTotalTravelTime(), astar.getTotalTravelTime(), 1e-9);
+        assertEquals(dijkstra.getTotalTravelTime(), bidirectional.getTotalTravelTime(), 1e-9);
+        assertTrue(astar.getExpandedNodes() < dijkstra.getExpandedNodes(),
+                astar.getExpandedNodes() + " vs " + dijkstra.getExpandedNodes());
+        assertTrue(bidirectional.getExpandedNodes() < dijkstra.getExpandedNodes(),
+                bidirectional.getExpandedNodes() + " vs " + dijkstra.getExpandedNodes());
+    }
+
+    @Test
+    void goalDirectedSearchesFallBackWithoutCoordinates() {
+        MetroGraph graph = randomGraph(new Random(5), 80, 6);
+        assertFalse(graph.getCompact().hasCoordinates());
+
+        for (Long source : graph.getNodes().keySet()) {
+            for (Long destination : graph.getNodes().keySet()) {
+                PathResult dijkstra = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.DIJKSTRA);
+                PathResult astar = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.ASTAR);
+                PathResult bidirectional = pathFinderService.findOptimalPath(graph, source, destination, SearchMode.BIDIRECTIONAL);
+
+                assertEquals(dijkstra, astar);
+                assertEquals(dijkstra.isPathFound(), bidirectional.isPathFound());
+                assertEquals(dijkstra.getTotalTravelTime(), bidirectional.getTotalTravelTime(), 1e-9);
+            }
+        }
+    }
+
+    private static MetroGraph randomGraph(Random random, int stopCount, int lines) {
+        return randomGraph(random, stopCount, lines, false);
+    }
+
+    private static MetroGraph randomGraph(Random random, int stopCount, int lines, boolean withCoordinates) {
+        return GraphService.buildGraph(randomRoutes(random, stopCount, lines, 5, 29, withCoordinates), 1L);
+    }
+
+    // Cost of the returned segments: 2 minutes per hop plus the penalty per interchange
+    private static double recomputedCost(MetroGraph graph, PathResult result) {
+        return (result.getTotalStops() - 1) * GraphService.DEFAULT_HOP_TIME
+                + result.getTotalInterchanges() * 5.0;
+    }
+
+    // The search PathFinderService used before the (stop, line) engine, kept as a reference
+    private static double legacyCost(MetroGraph graph, Long sourceId, Long destinationId) {
+        Map<Long, Double> cost = new HashMap<>();
+        Map<Long, GraphEdge> previous = new HashMap<>();
+        Set<Long> visited = new HashSet<>();
+        PriorityQueue<long[]> pq = new PriorityQueue<>(Comparator.comparingDouble(a -> a[1]));
+
+        for (Long stopId : graph.getNodes().keySet()) {
+            cost.put(stopId, Double.MAX_VALUE);
+        }
+        cost.put(sourceId, 0.0);
+        pq.offer(new long[]{sourceId, 0});
+
+        while (!pq.isEmpty()) {
+            Long current = pq.poll()[0];
+            if (!visited.add(current)) continue;
+            if (current.equals(destinationId)) break;
+
+            for (GraphEdge edge : graph.getNeighbors(current)) {
+                Long neighbor = edge.getToStopId();
+                if (visited.contains(neighbor)) continue;
+
+                double penalty = 0.0;
+                if (previous.containsKey(current)
+                        && !previous.get(current).getRouteId().equals(edge.getRouteId())) {
+                    penalty = 5.0;
+                }
+                double newCost = cost.get(current) + edge.getTravelTime() + penalty;
+                if (newCost < cost.get(neighbor)) {
+                    cost.put(neighbor, newCost);
+                    previous.put(neighbor, edge);
+                    pq.offer(new long[]{neighbor, (long) newCost});
+                }
+            }
+        }
+        return cost.get(destinationId);
+    }
+}
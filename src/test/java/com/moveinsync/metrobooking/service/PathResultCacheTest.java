@@ -0,0 +1,79 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.PathResult;
+import com.moveinsync.metrobooking.graph.CompactGraph;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathResultCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PathResultCache cache = new PathResultCache(100, meterRegistry);
+
+    @Test
+    void concurrentMissesForTheSameTripSearchOnce() throws Exception {
+        MetroGraph graph = graph(1L);
+        AtomicInteger searches = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<PathResult>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 50; i++) {
+                results.add(executor.submit(() -> cache.get(graph, 1L, 2L, () -> {
+                    searches.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return PathResult.builder().pathFound(true).totalStops(2).build();
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+        }
+
+        PathResult first = results.get(0).get();
+        for (Future<PathResult> result : results) {
+            assertSame(first, result.get());
+        }
+        assertEquals(1, searches.get());
+    }
+
+    @Test
+    void aNewGraphVersionMissesWithoutClearingTheCache() {
+        AtomicInteger searches = new AtomicInteger();
+        PathResult v1 = cache.get(graph(1L), 1L, 2L, () -> result(searches));
+        assertSame(v1, cache.get(graph(1L), 1L, 2L, () -> result(searches)));
+
+        PathResult v2 = cache.get(graph(2L), 1L, 2L, () -> result(searches));
+        assertNotSame(v1, v2);
+        assertEquals(2, searches.get());
+        assertEquals(2, cache.size());
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "pathResults").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "pathResults").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    private static PathResult result(AtomicInteger searches) {
+        searches.incrementAndGet();
+        return PathResult.builder().pathFound(true).build();
+    }
+
+    private static MetroGraph graph(long version) {
+        return new MetroGraph(CompactGraph.builder().build(), version);
+    }
+}
@@ -0,0 +1,119 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.RouteRepository;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import com.moveinsync.metrobooking.security.UserCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.cache.test.autoconfigure.AutoConfigureCache;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Each repository call commits on its own, as in the app, so the caches fill
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@AutoConfigureCache
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ReferenceDataCache.class)
+class ReferenceDataCacheTest {
+
+    // The JPA slice scans neither UserCache (User's entity listener) nor metrics
+    @TestConfiguration
+    static class SliceConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        UserCache userCache(MeterRegistry meterRegistry) {
+            return new UserCache(10, 60, meterRegistry);
+        }
+    }
+
+    @Autowired
+    private StopRepository stopRepository;
+    @Autowired
+    private RouteRepository routeRepository;
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        routeRepository.deleteAll();
+        stopRepository.deleteAll();
+    }
+
+    @Test
+    void answersTheBookingPathAndListingsWithoutQueriesUntilAWrite() {
+        Stop a = stopRepository.save(Stop.builder().name("Rajiv Chowk").code("RC").build());
+        Stop b = stopRepository.save(Stop.builder().name("Kashmere Gate").code("KG").build());
+        Stop c = stopRepository.save(Stop.builder().name("Dwarka").code("DW").build());
+        Route blue = routeRepository.save(Route.builder().name("Blue").color("BLUE").stops(List.of(a, b, c)).build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stopNames();
+        routeStops(blue.getId());
+        statistics.clear();
+
+        // Two stop lookups per booking, then the listings, all from memory
+        for (int booking = 0; booking < 10; booking++) {
+            assertEquals("Rajiv Chowk", stopRepository.findById(a.getId()).orElseThrow().getName());
+            assertEquals("Dwarka", stopRepository.findById(c.getId()).orElseThrow().getName());
+        }
+        assertEquals(List.of("Dwarka", "Kashmere Gate", "Rajiv Chowk"), stopNames());
+        assertEquals(List.of("RC", "KG", "DW"), routeStops(blue.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getDomainDataRegionStatistics(ReferenceDataCache.STOPS).getMissCount());
+        assertEquals(1.0, meterRegistry.get("metro.reference.cache.hit.ratio")
+                .tag("region", ReferenceDataCache.STOPS).gauge().value());
+
+        // A write through the controllers is seen by the next read
+        Stop renamed = stopRepository.findById(b.getId()).orElseThrow();
+        renamed.setName("Kashmiri Gate");
+        stopRepository.save(renamed);
+        referenceDataCache.stopChanged(renamed.getId());
+        assertEquals(List.of("Dwarka", "Kashmiri Gate", "Rajiv Chowk"), stopNames());
+
+        Route shortened = routeRepository.findById(blue.getId()).orElseThrow();
+        shortened.setStops(List.of(a, b));
+        routeRepository.save(shortened);
+        referenceDataCache.routeChanged(blue.getId());
+        assertEquals(List.of("RC", "KG"), routeStops(blue.getId()));
+    }
+
+    private List<String> stopNames() {
+        return stopRepository.findAll().stream().map(Stop::getName).sorted().toList();
+    }
+
+    // As the route listing serialises them, inside the request's session
+    private List<String> routeStops(Long routeId) {
+        return new TransactionTemplate(transactionManager).execute(status -> routeRepository.findAll().stream()
+                .filter(route -> route.getId().equals(routeId))
+                .flatMap(route -> route.getStops().stream())
+                .map(Stop::getCode)
+                .toList());
+    }
+}
@@ -0,0 +1,135 @@
+package com.moveinsync.metrobooking.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.moveinsync.metrobooking.config.AppConfig;
+import com.moveinsync.metrobooking.dto.PathResult;
+import com.moveinsync.metrobooking.dto.PathSegment;
+import com.moveinsync.metrobooking.graph.MetroGraph;
+import com.moveinsync.metrobooking.model.Booking;
+import com.moveinsync.metrobooking.model.Route;
+import com.moveinsync.metrobooking.model.Stop;
+import com.moveinsync.metrobooking.repository.RoutePathRepository;
+import com.moveinsync.metrobooking.repository.RoutePathRepository.StorageReport;
+import com.moveinsync.metrobooking.repository.RouteRepository;
+import com.moveinsync.metrobooking.repository.StopRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+import static com.moveinsync.metrobooking.graph.TestNetworks.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RoutePathCodecTest {
+
+    private final PathFinderService pathFinderService = new PathFinderService(new SimpleMeterRegistry());
+    private final ObjectMapper objectMapper = new AppConfig().objectMapper();
+    private final GraphService graphService = mock(GraphService.class);
+    private final StopRepository stopRepository = mock(StopRepository.class);
+    private final RouteRepository routeRepository = mock(RouteRepository.class);
+    private final RoutePathCodec codec = new RoutePathCodec(graphService, stopRepository, routeRepository, objectMapper);
+
+    private final Map<Long, Stop> stops = stops(8);
+    // Red 1-2-3-4, Blue 3-5-6, Green 6-7-8 (ids 10, 20, 30)
+    private final Route red = route(10, "Red", stops, 1, 2, 3, 4);
+    private final Route blue = route(20, "Blue", stops, 3, 5, 6);
+    private final Route green = route(30, "Green", stops, 6, 7, 8);
+
+    @Test
+    void decodesEveryPathBackFromTheGraph() throws Exception {
+        MetroGraph graph = GraphService.buildGraph(List.of(red, blue, green));
+        when(graphService.getGraph()).thenReturn(graph);
+
+        for (long source = 1; source <= 8; source++) {
+            for (long destination = 1; destination <= 8; destination++) {
+                if (source == destination) continue;
+                PathResult result = pathFinderService.findOptimalPath(graph, source, destination);
+                byte[] encoded = RoutePathCodec.encode(result.getSegments());
+                Booking booking = Booking.builder().routePathEncoded(encoded).build();
+
+                assertEquals(result.getSegments(), codec.decode(booking), source + " -> " + destination);
+                int json = objectMapper.writeValueAsBytes(result.getSegments()).length;
+                assertTrue(encoded.length * 10 < json, encoded.length + " bytes against " + json + " of JSON");
+            }
+        }
+        PathResult acrossAllLines = pathFinderService.findOptimalPath(graph, 1L, 8L);
+        assertEquals(2, codec.decode(Booking.builder()
+                        .routePathEncoded(RoutePathCodec.encode(acrossAllLines.getSegments())).build())
+                .stream().filter(PathSegment::isInterchange).count());
+    }
+
+    @Test
+    void fallsBackToStoredNamesForStopsAndLinesNoLongerInTheNetwork() {
+        PathResult result = pathFinderService.findOptimalPath(
+                GraphService.buildGraph(List.of(red, blue)), 1L, 6L);
+        byte[] encoded = RoutePathCodec.encode(result.getSegments());
+
+        // Blue has since closed; stop 5 is still in the stops table, stop 6 is gone
+        when(graphService.getGraph()).thenReturn(GraphService.buildGraph(List.of(red)));
+        when(stopRepository.findAllById(any())).thenReturn(List.of(stops.get(5L)));
+        when(routeRepository.findAllById(any())).thenReturn(List.of(blue));
+
+        List<PathSegment> decoded = codec.decode(Booking.builder().routePathEncoded(encoded).build());
+
+        assertEquals(List.of("Stop 1", "Stop 2", "Stop 3", "Stop 5", "Stop #6"),
+                decoded.stream().map(PathSegment::getStopName).toList());
+        assertEquals(List.of("Red", "Red", "Red", "Blue", "Blue"),
+                decoded.stream().map(PathSegment::getRouteName).toList());
+        assertEquals(List.of(false, false, false, true, false),
+                decoded.stream().map(PathSegment::isInterchange).toList());
+    }
+
+    @Test
+    void migratesJsonRowsItCanResolveAndReportsTheSaving() throws Exception {
+        MetroGraph graph = GraphService.buildGraph(List.of(red, blue, green));
+        when(graphService.getGraph()).thenReturn(graph);
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routepaths;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS bookings");
+        jdbc.execute("CREATE TABLE bookings (id BIGINT PRIMARY KEY, route_path VARCHAR(100000),"
+                + " route_path_encoded VARBINARY(4096))");
+
+        // As stored before the encoding: names only
+        List<PathSegment> path = pathFinderService.findOptimalPath(graph, 1L, 8L).getSegments();
+        String json = objectMapper.writeValueAsString(path);
+        for (long id = 1; id <= 1200; id++) {
+            jdbc.update("INSERT INTO bookings VALUES (?, ?, NULL)", id, json);
+        }
+        jdbc.update("INSERT INTO bookings VALUES (?, ?, NULL)", 1201,
+                json.replace("\"S8\"", "\"CLOSED\""));
+        jdbc.update("INSERT INTO bookings VALUES (?, NULL, ?)", 1202, RoutePathCodec.encode(path));
+
+        RoutePathRepository repository = spy(new RoutePathRepository(dataSource));
+        StorageReport before = repository.storageReport();
+        RoutePathMigration migration = new RoutePathMigration(repository, graphService, objectMapper);
+        long migrated = migration.migrate();
+        StorageReport after = repository.storageReport();
+
+        assertEquals(1200, migrated);
+        assertEquals(1, after.jsonRows());
+        assertEquals(1201, after.encodedRows());
+        assertTrue((after.jsonBytes() + after.encodedBytes()) * 10 < before.jsonBytes() + before.encodedBytes(),
+                before + " -> " + after);
+        byte[] encoded = jdbc.queryForObject("SELECT route_path_encoded FROM bookings WHERE id = 7", byte[].class);
+        assertEquals(path, codec.decode(Booking.builder().routePathEncoded(encoded).build()));
+        // The row naming a closed stop still reads from its JSON
+        String kept = jdbc.queryForObject("SELECT route_path FROM bookings WHERE id = 1201", String.class);
+        assertEquals("CLOSED", codec.decode(Booking.builder().routePath(kept).build()).getLast().getStopCode());
+
+        // /actuator/info shows the figures taken at the end of the run without scanning again
+        clearInvocations(repository);
+        Info.Builder info = new Info.Builder();
+        migration.contribute(info);
+        Map<?, ?> storage = (Map<?, ?>) info.build().getDetails().get("routePathStorage");
+        assertEquals("done", storage.get("migration"));
+        assertEquals(after.encodedRows(), storage.get("encodedRows"));
+        assertEquals(after.encodedBytes(), storage.get("encodedBytes"));
+        verifyNoInteractions(repository);
+    }
+}
@@ -0,0 +1,134 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.TicketScan;
+import com.moveinsync.metrobooking.dto.TicketValidationResult;
+import com.moveinsync.metrobooking.dto.TicketValidationResult.Outcome;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import com.moveinsync.metrobooking.repository.TicketRedemptionRepository;
+import com.moveinsync.metrobooking.security.TicketSigner;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TicketServiceTest {
+
+    private final TicketSigner signer = new TicketSigner("test-ticket-secret");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbc;
+    private TicketService ticketService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:tickets;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS bookings");
+        jdbc.execute("CREATE TABLE bookings (id BIGINT PRIMARY KEY, booking_reference VARCHAR(255) UNIQUE,"
+                + " status VARCHAR(32), created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.streamReferencesByStatusIn(any())).thenReturn(Stream.empty());
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        TicketStatusIndex index = new TicketStatusIndex(bookingRepository, transactionManager, meterRegistry);
+        index.init();
+        index.load();
+
+        ticketService = new TicketService(signer, new TicketRedemptionRepository(dataSource), index, meterRegistry);
+        ticketService.init();
+    }
+
+    @Test
+    void admitsEachGenuineTicketOnce() {
+        long tomorrow = Instant.now().getEpochSecond() + 86_400;
+        long yesterday = Instant.now().getEpochSecond() - 86_400;
+        booking(1, "MIS-A", "CONFIRMED");
+        booking(2, "MIS-B", "CONFIRMED");
+        booking(3, "MIS-C", "CANCELLED");
+        booking(4, "MIS-D", "CONFIRMED");
+        booking(5, "MIS-E", "CONFIRMED");
+        String ticketA = signer.sign("MIS-A", 10, 20, 7, tomorrow);
+        String forged = signer.sign("MIS-B", 10, 20, 7, tomorrow).replace(".20.", ".21.");
+
+        List<TicketValidationResult> results = ticketService.validate(List.of(
+                new TicketScan(ticketA, 10L),
+                new TicketScan(ticketA, 10L),
+                new TicketScan(forged, null),
+                new TicketScan(signer.sign("MIS-C", 10, 20, 7, tomorrow), null),
+                new TicketScan(signer.sign("MIS-D", 10, 20, 7, yesterday), null),
+                new TicketScan(signer.sign("MIS-E", 10, 20, 7, tomorrow), 11L),
+                new TicketScan(signer.sign("MIS-GONE", 10, 20, 7, tomorrow), null),
+                new TicketScan("not a ticket", null)));
+
+        assertEquals(List.of(Outcome.ADMITTED, Outcome.ALREADY_USED, Outcome.INVALID, Outcome.CANCELLED,
+                        Outcome.EXPIRED, Outcome.WRONG_STOP, Outcome.NOT_FOUND, Outcome.INVALID),
+                results.stream().map(TicketValidationResult::getOutcome).toList());
+        assertEquals("MIS-A", results.get(0).getBookingReference());
+        assertEquals("USED", status("MIS-A"));
+        assertEquals("CONFIRMED", status("MIS-B"));
+        assertEquals("CONFIRMED", status("MIS-D"));
+        assertEquals("CONFIRMED", status("MIS-E"));
+
+        // A replay in a later batch is refused as well
+        assertEquals(Outcome.ALREADY_USED,
+                ticketService.validate(List.of(new TicketScan(ticketA, null))).getFirst().getOutcome());
+        assertEquals(1.0, meterRegistry.get("metro.ticket.scans").tag("outcome", "ADMITTED").counter().count());
+    }
+
+    @Test
+    void refusesKnownReplaysWithoutTheDatabase() {
+        long tomorrow = Instant.now().getEpochSecond() + 86_400;
+        String reference = new BookingReferenceGenerator(1).next();
+        booking(1, reference, "CONFIRMED");
+        String ticket = signer.sign(reference, 10, 20, 7, tomorrow);
+
+        assertEquals(Outcome.ADMITTED,
+                ticketService.validate(List.of(new TicketScan(ticket, null))).getFirst().getOutcome());
+        // With the row gone the database would say NOT_FOUND; the index answers first
+        jdbc.update("DELETE FROM bookings");
+        assertEquals(Outcome.ALREADY_USED,
+                ticketService.validate(List.of(new TicketScan(ticket, null))).getFirst().getOutcome());
+    }
+
+    @Test
+    void validatesLargeBatches() {
+        long tomorrow = Instant.now().getEpochSecond() + 86_400;
+        List<Object[]> rows = new ArrayList<>();
+        List<TicketScan> scans = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(new Object[]{i, "MIS-" + i, "CONFIRMED"});
+            scans.add(new TicketScan(signer.sign("MIS-" + i, 1, 2, i, tomorrow), 1L));
+        }
+        jdbc.batchUpdate("INSERT INTO bookings (id, booking_reference, status) VALUES (?, ?, ?)", rows);
+
+        int admitted = 0;
+        for (int from = 0; from < scans.size(); from += 500) {
+            for (TicketValidationResult result : ticketService.validate(scans.subList(from, from + 500))) {
+                if (result.getOutcome() == Outcome.ADMITTED) admitted++;
+            }
+        }
+
+        assertEquals(5000, admitted);
+        assertEquals(5000, jdbc.queryForObject("SELECT COUNT(*) FROM bookings WHERE status = 'USED'", Integer.class));
+    }
+
+    private void booking(long id, String reference, String status) {
+        jdbc.update("INSERT INTO bookings (id, booking_reference, status) VALUES (?, ?, ?)", id, reference, status);
+    }
+
+    private String status(String reference) {
+        return jdbc.queryForObject("SELECT status FROM bookings WHERE booking_reference = ?", String.class, reference);
+    }
+}
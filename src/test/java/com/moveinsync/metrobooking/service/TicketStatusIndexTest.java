@@ -0,0 +1,102 @@
+package com.moveinsync.metrobooking.service;
+
+import com.moveinsync.metrobooking.dto.TicketValidationResult.Outcome;
+import com.moveinsync.metrobooking.model.Booking.BookingStatus;
+import com.moveinsync.metrobooking.repository.BookingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TicketStatusIndexTest {
+
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BookingReferenceGenerator generator = new BookingReferenceGenerator(5);
+
+    @Test
+    void loadsSpentTicketsAndLearnsNewOnes() {
+        List<String> used = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String reference = generator.next();
+            used.add(reference);
+            rows.add(new Object[]{reference, i % 10 == 0 ? BookingStatus.CANCELLED : BookingStatus.USED});
+        }
+        rows.add(new Object[]{"MIS-20240221-ABC123", BookingStatus.USED}); // pre-generator reference
+        TicketStatusIndex index = index(rows);
+
+        assertEquals(100_000, index.size());
+        for (int i = 0; i < used.size(); i++) {
+            assertEquals(i % 10 == 0 ? Outcome.CANCELLED : Outcome.ALREADY_USED, index.lookup(used.get(i)));
+        }
+
+        int unknownHits = 0;
+        List<String> fresh = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            String reference = generator.next();
+            fresh.add(reference);
+            if (index.lookup(reference) != null) unknownHits++;
+        }
+        assertEquals(0, unknownHits);
+        double falsePositives = meterRegistry.get("metro.ticket.index.bloom.false.positives").counter().count();
+        assertTrue(falsePositives < 3000, "Bloom filter passed " + falsePositives + " of 100000 unknown tickets");
+
+        index.markUsed(fresh.getFirst());
+        assertEquals(Outcome.ALREADY_USED, index.lookup(fresh.getFirst()));
+        index.markCancelled(fresh.getFirst());
+        assertEquals(Outcome.CANCELLED, index.lookup(fresh.getFirst()));
+
+        double fpp = meterRegistry.get("metro.ticket.index.bloom.fpp").gauge().value();
+        assertTrue(fpp > 0 && fpp < 0.02, "expected false-positive rate " + fpp);
+        double memory = meterRegistry.get("metro.ticket.index.memory").gauge().value();
+        assertTrue(memory < 100_001 * 40, "index takes " + memory + " bytes");
+    }
+
+    @Test
+    void readersSeeEveryCompletedWriteWhileTheTableGrows() throws Exception {
+        TicketStatusIndex index = index(List.of());
+        List<String> references = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) references.add(generator.next());
+
+        List<Future<?>> readers = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> writer = threads.submit(() -> references.forEach(index::markUsed));
+            for (int r = 0; r < 4; r++) {
+                readers.add(threads.submit(() -> {
+                    while (!writer.isDone()) {
+                        // Anything already written must be found, whatever resize is under way
+                        int known = index.size();
+                        for (int i = 0; i < known; i += 97) {
+                            assertEquals(Outcome.ALREADY_USED, index.lookup(references.get(i)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            writer.get();
+        }
+        for (Future<?> reader : readers) reader.get();
+        assertEquals(200_000, index.size());
+    }
+
+    private TicketStatusIndex index(List<Object[]> rows) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(bookingRepository.streamReferencesByStatusIn(any())).thenReturn(rows.stream());
+        TicketStatusIndex index = new TicketStatusIndex(bookingRepository, transactionManager, meterRegistry);
+        index.init();
+        index.load();
+        return index;
+    }
+}